@@ -8,18 +8,6 @@ final class ArrayUtil {
   private static final Integer[] BOX_INT_0 = new Integer[0];
   static final int[] INT_0 = new int[]{};
 
-  /**
-   * Creates an array of [element, index] pairs from given array.
-   * @param a an array of length {@code n}
-   * @return a two dimensional array of length {@code n} which contains the  [element, index] pairs in {@code a}
-   */
-  static int[][] withIndex(int[] a) {
-    int[][] result = new int[a.length][];
-    for (int i = 0; i < a.length; i += 1)
-      result[i] = new int[]{a[i], i};
-    return result;
-  }
-
   /**
    * Creates an array of the numbers {@code start} to {@code end} in sequence.
    * If {@code start == end}, an empty array is returned. If {@code end} is negative, the range
@@ -0,0 +1,304 @@
+package com.github.cyclophone;
+
+import java.math.BigInteger;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>A spliterator over the rankings of a given cycle type.</p>
+ *
+ * <p>Each permutation is generated exactly once, as a word that lists its cycles one after the other:
+ * Each cycle starts with the smallest element that is not used by a previous cycle,
+ * and its remaining elements are chosen in order from the unused elements.
+ * Thus a word is described by a choice of cycle length at each cycle start,
+ * and a digit at each other position {@code p}, which is an index into the {@code n - p} unused elements.
+ * The elements are produced in the order of these choices.</p>
+ *
+ * <p>If the size of the conjugacy class fits in a {@code long}, this spliterator splits by rank,
+ * like {@link SymmetricGroupSpliterator}. Otherwise it is unsized and does not split.</p>
+ *
+ * @param <E> element type
+ */
+final class CycleTypeSpliterator<E> implements Spliterator<E> {
+
+  private static final int CHARACTERISTICS = ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+
+  // distinct cycle lengths, ascending
+  private final int[] lengths;
+  // multiplicities[i] is the number of cycles of length lengths[i]
+  private final int[] multiplicities;
+  private final int n;
+  private final Function<int[], E> mapper;
+
+  // size of the conjugacy class, or -1 if it does not fit in a long
+  private final long total;
+
+  // rank of the next element
+  private long from;
+  // rank limit, exclusive
+  private final long to;
+
+  // null before the first element
+  private Word word;
+  private boolean exhausted;
+
+  /**
+   * @param lengths distinct cycle lengths, ascending
+   * @param multiplicities the number of cycles of each length
+   * @param mapper a function that creates an element from a ranking;
+   *               the ranking is reused and must not be retained by the mapper
+   */
+  CycleTypeSpliterator(int[] lengths, int[] multiplicities, Function<int[], E> mapper) {
+    this(lengths, multiplicities, mapper, classSize(lengths, multiplicities));
+  }
+
+  private CycleTypeSpliterator(int[] lengths, int[] multiplicities, Function<int[], E> mapper, BigInteger total) {
+    this(lengths, multiplicities, mapper, total.bitLength() < Long.SIZE ? total.longValue() : -1, 0,
+        total.bitLength() < Long.SIZE ? total.longValue() : Long.MAX_VALUE);
+  }
+
+  private CycleTypeSpliterator(int[] lengths, int[] multiplicities, Function<int[], E> mapper,
+                               long total, long from, long to) {
+    this.lengths = lengths;
+    this.multiplicities = multiplicities;
+    int n = 0;
+    for (int i = 0; i < lengths.length; i++)
+      n += lengths[i] * multiplicities[i];
+    this.n = n;
+    this.mapper = mapper;
+    this.total = total;
+    this.from = from;
+    this.to = to;
+  }
+
+  /**
+   * Calculate the size of a conjugacy class: {@code n! / prod(k^m_k * m_k!)}.
+   *
+   * @param lengths distinct cycle lengths
+   * @param multiplicities the number of cycles of each length
+   * @return the number of permutations of this cycle type
+   */
+  static BigInteger classSize(int[] lengths, int[] multiplicities) {
+    int n = 0;
+    BigInteger denominator = BigInteger.ONE;
+    for (int i = 0; i < lengths.length; i++) {
+      n += lengths[i] * multiplicities[i];
+      denominator = denominator
+          .multiply(BigInteger.valueOf(lengths[i]).pow(multiplicities[i]))
+          .multiply(Rankings.factorial(multiplicities[i]));
+    }
+    return Rankings.factorial(n).divide(denominator);
+  }
+
+  /**
+   * The current word, together with everything that is needed to change its tail.
+   */
+  private final class Word {
+
+    // the elements, cycle after cycle
+    final int[] elements = new int[n];
+    // at a cycle start: an index into lengths; elsewhere: an index into the unused elements
+    final int[] digits = new int[n];
+    // the position where the cycle that contains each position starts
+    final int[] starts = new int[n];
+    // the number of cycles of each length that are not started before the current position
+    final int[] remaining = multiplicities.clone();
+    // Fenwick tree of the unused elements
+    final int[] tree = new int[n + 1];
+    final int[] ranking = new int[n];
+
+    Word() {
+      for (int k = 1; k <= n; k++)
+        tree[k] = k & -k;
+    }
+
+    private boolean isStart(int pos) {
+      return pos == 0 || pos == starts[pos - 1] + lengths[digits[starts[pos - 1]]];
+    }
+
+    private int removeUnused(int index) {
+      int pos = 0;
+      for (int step = Integer.highestOneBit(Math.max(n, 1)); step > 0; step >>= 1) {
+        int next = pos + step;
+        if (next <= n && tree[next] <= index) {
+          pos = next;
+          index -= tree[next];
+        }
+      }
+      for (int k = pos + 1; k <= n; k += k & -k)
+        tree[k]--;
+      return pos;
+    }
+
+    private void addUnused(int element) {
+      for (int k = element + 1; k <= n; k += k & -k)
+        tree[k]++;
+    }
+
+    /**
+     * Build the word from position {@code pos} on.
+     * The digits before {@code first} are given, the others are chosen as small as possible.
+     */
+    void decode(int pos, int first) {
+      for (; pos < n; pos++) {
+        int start;
+        if (isStart(pos)) {
+          start = pos;
+          if (pos >= first) {
+            int i = 0;
+            while (remaining[i] == 0)
+              i++;
+            digits[pos] = i;
+          }
+          remaining[digits[pos]]--;
+          elements[pos] = removeUnused(0);
+        } else {
+          start = starts[pos - 1];
+          if (pos >= first) {
+            digits[pos] = 0;
+          }
+          elements[pos] = removeUnused(digits[pos]);
+        }
+        starts[pos] = start;
+        int length = lengths[digits[start]];
+        if (pos == start + length - 1) {
+          for (int j = start; j < pos; j++)
+            ranking[elements[j]] = elements[j + 1];
+          ranking[elements[pos]] = elements[start];
+        }
+      }
+    }
+
+    /**
+     * Change the word into the next one.
+     *
+     * @return false if this is the last word, in which case the state is undefined
+     */
+    boolean advance() {
+      for (int pos = n - 1; pos >= 0; pos--) {
+        addUnused(elements[pos]);
+        if (isStart(pos)) {
+          remaining[digits[pos]]++;
+          for (int i = digits[pos] + 1; i < lengths.length; i++) {
+            if (remaining[i] != 0) {
+              digits[pos] = i;
+              decode(pos, pos + 1);
+              return true;
+            }
+          }
+        } else if (digits[pos] + 1 < n - pos) {
+          digits[pos]++;
+          decode(pos, pos + 1);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Build the word with the given rank.
+     */
+    void seed(long rank) {
+      int[] counts = multiplicities.clone();
+      long size = total;
+      int pos = 0;
+      while (pos < n) {
+        int r = n - pos;
+        for (int i = 0; i < lengths.length; i++) {
+          int m = counts[i];
+          if (m == 0) {
+            continue;
+          }
+          int k = lengths[i];
+          // the fraction of the remaining class where the smallest element is in a k-cycle is k * m / r
+          long km = (long) k * m;
+          long g = gcd(km, r);
+          long block = size / (r / g) * (km / g);
+          if (rank >= block) {
+            rank -= block;
+            continue;
+          }
+          counts[i]--;
+          digits[pos] = i;
+          // the choices of the followers are a mixed radix number, each followed by the rest of the class
+          long falling = 1;
+          for (int j = 1; j < k; j++)
+            falling *= r - j;
+          size = block / falling;
+          long q = rank / size;
+          rank %= size;
+          for (int j = k - 1; j >= 1; j--) {
+            digits[pos + j] = (int) (q % (r - j));
+            q /= r - j;
+          }
+          pos += k;
+          break;
+        }
+      }
+      decode(0, n);
+    }
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      long t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  private int[] next() {
+    if (word == null) {
+      word = new Word();
+      if (total >= 0) {
+        word.seed(from);
+      } else {
+        word.decode(0, 0);
+      }
+    } else if (!word.advance()) {
+      exhausted = true;
+      return null;
+    }
+    from++;
+    return word.ranking;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super E> action) {
+    if (exhausted || from >= to) {
+      return false;
+    }
+    int[] ranking = next();
+    if (ranking == null) {
+      return false;
+    }
+    action.accept(mapper.apply(ranking));
+    return true;
+  }
+
+  @Override
+  public Spliterator<E> trySplit() {
+    long size = to - from;
+    if (total < 0 || size < 2) {
+      return null;
+    }
+    long mid = from + size / 2;
+    CycleTypeSpliterator<E> prefix = new CycleTypeSpliterator<>(lengths, multiplicities, mapper, total, from, mid);
+    prefix.word = word;
+    from = mid;
+    word = null;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return total < 0 ? Long.MAX_VALUE : to - from;
+  }
+
+  @Override
+  public int characteristics() {
+    return total < 0 ? CHARACTERISTICS : CHARACTERISTICS | SIZED | SUBSIZED;
+  }
+}
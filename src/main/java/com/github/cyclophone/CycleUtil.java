@@ -81,6 +81,33 @@ final class CycleUtil {
 
   }
 
+  /**
+   * Count the cycles of each length in the input ranking, including fixed points.
+   * This method does not check if the input is indeed a valid ranking and will have unexpected results otherwise.
+   *
+   * @param ranking a ranking
+   * @return an array {@code counts} of length {@code ranking.length + 1}, where {@code counts[k]}
+   * is the number of cycles of length {@code k}
+   */
+  static int[] cycleCounts(int[] ranking) {
+    int[] counts = new int[ranking.length + 1];
+    boolean[] done = new boolean[ranking.length];
+    for (int i = 0; i < ranking.length; i += 1) {
+      if (done[i]) {
+        continue;
+      }
+      int length = 0;
+      int j = i;
+      do {
+        done[j] = true;
+        length++;
+        j = ranking[j];
+      } while (j != i);
+      counts[length]++;
+    }
+    return counts;
+  }
+
   /**
    * Find all nontrivial cycles in the input ranking.
    * This method does not check if the input is indeed a valid ranking and will have unexpected results otherwise.
@@ -18,7 +18,8 @@ import static com.github.cyclophone.ArrayUtil.checkLength;
  * be applied in a destructive manner, see the {@code clobber} and {@code unclobber} methods.
  * </p>
  * <p>
- * Applying it to a single index is {@code O(n)} whereas {@link Permutation} does this in constant time.
+ * Applying it to a single index walks the cycles if they are short. Otherwise a position index is built
+ * on first use, after which {@link #apply(int)} and {@link #unApply(int)} take constant time.
  * </p>
  *
  * @see Permutation#toCycles()
@@ -29,9 +30,17 @@ final class Cycles implements Serializable {
 
   private static final Cycles IDENTITY = new Cycles(new int[0][], 0);
 
+  /**
+   * If the cycles move fewer elements than this, point lookups walk the cycles instead of using an index.
+   */
+  static final int INDEX_THRESHOLD = 16;
+
   private final int length;
   private final int[][] cycles;
 
+  // {forward, backward}, built on first use by apply(int) or unApply(int); racy but idempotent
+  private transient volatile int[][] index;
+
   private Cycles(int[][] cycles, int length) {
     this.length = length;
     this.cycles = cycles;
@@ -72,11 +81,14 @@ final class Cycles implements Serializable {
   void clobber(int[] array) {
     checkLength(length, array.length);
     for (int[] cycle : cycles) {
-      for (int j = cycle.length - 2; j >= 0; j--) {
-        int temp = array[cycle[j + 1]];
-        array[cycle[j + 1]] = array[cycle[j]];
-        array[cycle[j]] = temp;
+      if (cycle.length == 0) {
+        continue;
       }
+      int last = cycle.length - 1;
+      int temp = array[cycle[last]];
+      for (int j = last; j > 0; j--)
+        array[cycle[j]] = array[cycle[j - 1]];
+      array[cycle[0]] = temp;
     }
   }
 
@@ -89,11 +101,14 @@ final class Cycles implements Serializable {
   void unclobber(int[] array) {
     checkLength(length, array.length);
     for (int[] cycle : cycles) {
-      for (int j = 0; j < cycle.length - 1; j++) {
-        int temp = array[cycle[j + 1]];
-        array[cycle[j + 1]] = array[cycle[j]];
-        array[cycle[j]] = temp;
+      if (cycle.length == 0) {
+        continue;
       }
+      int last = cycle.length - 1;
+      int temp = array[cycle[0]];
+      for (int j = 0; j < last; j++)
+        array[cycle[j]] = array[cycle[j + 1]];
+      array[cycle[last]] = temp;
     }
   }
 
@@ -108,11 +123,14 @@ final class Cycles implements Serializable {
   <E> void clobber(List<E> list) {
     checkLength(length, list.size());
     for (int[] cycle : cycles) {
-      for (int j = cycle.length - 2; j >= 0; j--) {
-        E temp = list.get(cycle[j + 1]);
-        list.set(cycle[j + 1], list.get(cycle[j]));
-        list.set(cycle[j], temp);
+      if (cycle.length == 0) {
+        continue;
       }
+      int last = cycle.length - 1;
+      E temp = list.get(cycle[last]);
+      for (int j = last; j > 0; j--)
+        list.set(cycle[j], list.get(cycle[j - 1]));
+      list.set(cycle[0], temp);
     }
   }
 
@@ -149,6 +167,10 @@ final class Cycles implements Serializable {
    * @return the moved index
    */
   int apply(int n) {
+    int[][] index = index();
+    if (index != null) {
+      return n >= 0 && n < length ? index[0][n] : n;
+    }
     for (int[] cycle : cycles)
       for (int j = cycle.length - 2; j >= 0; j--)
         n = n == cycle[j] ? cycle[j + 1] : n == cycle[j + 1] ? cycle[j] : n;
@@ -162,12 +184,40 @@ final class Cycles implements Serializable {
    * @return the moved index
    */
   int unApply(int n) {
+    int[][] index = index();
+    if (index != null) {
+      return n >= 0 && n < length ? index[1][n] : n;
+    }
     for (int[] cycle : cycles)
       for (int j = 0; j < cycle.length - 1; j++)
         n = n == cycle[j] ? cycle[j + 1] : n == cycle[j + 1] ? cycle[j] : n;
     return n;
   }
 
+  /**
+   * Get the position index, building it if necessary.
+   *
+   * @return the forward and backward position index, or {@code null} if the cycles are too short to need one
+   */
+  private int[][] index() {
+    int[][] result = index;
+    if (result != null || length < INDEX_THRESHOLD) {
+      return result;
+    }
+    int moved = 0;
+    for (int[] cycle : cycles)
+      moved += cycle.length;
+    if (moved < INDEX_THRESHOLD) {
+      return null;
+    }
+    // clobber moves the element at i to apply(i), even if the cycles are not disjoint
+    int[] backward = ArrayUtil.range(length);
+    clobber(backward);
+    result = new int[][]{Rankings.invert(backward), backward};
+    index = result;
+    return result;
+  }
+
   /**
    * Uncompile this operation.
    *
@@ -0,0 +1,433 @@
+package com.github.cyclophone;
+
+/**
+ * <p>In-place application of rankings to arrays, by rotating each cycle.</p>
+ *
+ * <p>The cycles are found by walking the ranking. Each cycle must be rotated exactly once,
+ * which is ensured in one of two ways:
+ * By default, visited indexes are tracked in a bitset, which takes one bit per index.
+ * In constant memory mode, a cycle is only rotated from its smallest index, the leader.
+ * Checking for the leader walks the cycle until a smaller index is found.
+ * This costs no memory, but may take quadratic time if the ranking has very long cycles.</p>
+ */
+final class InPlace {
+
+  private InPlace() {
+  }
+
+  /**
+   * Check if a cycle should be rotated starting at {@code i}.
+   *
+   * @param ranking a ranking
+   * @param i an index that is not a fixed point
+   * @param done the bitset of visited indexes, or {@code null} in constant memory mode
+   * @return true if the cycle of {@code i} has not been rotated yet, and {@code i} is its leader
+   */
+  private static boolean isStart(int[] ranking, int i, long[] done) {
+    if (done != null) {
+      return (done[i >>> 6] & (1L << i)) == 0;
+    }
+    int j = ranking[i];
+    while (j > i)
+      j = ranking[j];
+    return j == i;
+  }
+
+  private static void mark(long[] done, int j) {
+    if (done != null) {
+      done[j >>> 6] |= 1L << j;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void apply(int[] ranking, int[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      int carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        int next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], int[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void unapply(int[] ranking, int[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      int first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void apply(int[] ranking, long[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      long carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        long next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], long[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void unapply(int[] ranking, long[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      long first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void apply(int[] ranking, double[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      double carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        double next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], double[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void unapply(int[] ranking, double[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      double first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void apply(int[] ranking, float[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      float carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        float next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], float[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void unapply(int[] ranking, float[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      float first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void apply(int[] ranking, short[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      short carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        short next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], short[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void unapply(int[] ranking, short[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      short first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void apply(int[] ranking, char[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      char carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        char next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], char[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void unapply(int[] ranking, char[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      char first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void apply(int[] ranking, byte[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      byte carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        byte next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], byte[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static void unapply(int[] ranking, byte[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      byte first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+
+  /**
+   * Apply a ranking to an array in place: the element at {@code i} moves to {@code ranking[i]}.
+   * Each cycle is rotated with a single temporary, so each element is read once and written once.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static <T> void apply(int[] ranking, T[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      T carry = a[i];
+      for (int j = ranking[i]; j != i; j = ranking[j]) {
+        mark(done, j);
+        T next = a[j];
+        a[j] = carry;
+        carry = next;
+      }
+      a[i] = carry;
+    }
+  }
+
+  /**
+   * Undo {@link #apply(int[], Object[], boolean)} in place: the element at {@code ranking[i]} moves to {@code i}.
+   *
+   * @param ranking a ranking
+   * @param a an array of length not less than {@code ranking.length}
+   * @param constantMemory whether to find the cycles by leader checks instead of a bitset
+   */
+  static <T> void unapply(int[] ranking, T[] a, boolean constantMemory) {
+    long[] done = constantMemory ? null : new long[(ranking.length + 63) >>> 6];
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] == i || !isStart(ranking, i, done)) {
+        continue;
+      }
+      T first = a[i];
+      int j = i;
+      for (int k = ranking[i]; k != i; k = ranking[k]) {
+        mark(done, k);
+        a[j] = a[k];
+        j = k;
+      }
+      a[j] = first;
+    }
+  }
+}
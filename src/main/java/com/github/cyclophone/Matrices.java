@@ -0,0 +1,251 @@
+package com.github.cyclophone;
+
+/**
+ * <p>In-place application of rankings to the rows or columns of row-major matrices.</p>
+ *
+ * <p>Rows are moved as whole segments by {@link System#arraycopy}, following the cycles of the ranking.
+ * Columns are permuted one row at a time, through a buffer of one row.
+ * Both kinds of work are split across the common fork/join pool if the matrix has at least
+ * {@link Parallel#THRESHOLD} elements.</p>
+ */
+final class Matrices {
+
+  private Matrices() {
+  }
+
+  /**
+   * The minimum number of rows or columns per parallel chunk, such that each chunk
+   * touches at least {@link Parallel#THRESHOLD} elements.
+   */
+  private static int grain(int n) {
+    return Math.max(1, Parallel.THRESHOLD / Math.max(1, n));
+  }
+
+  /**
+   * Move row {@code i} of a row-major matrix to row {@code ranking[i]}, in place.
+   * The columns are split into strips that are processed concurrently if the matrix is large.
+   * In each strip, the cycles of the ranking are rotated with two temporary row segments.
+   *
+   * @param ranking a ranking of length not greater than the number of rows
+   * @param data a row-major matrix
+   * @param cols the number of columns
+   */
+  static void applyToRows(int[] ranking, int[] data, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(cols, grain(n), (from, to) -> {
+      int width = to - from;
+      int[] carry = new int[width];
+      int[] next = new int[width];
+      long[] done = new long[(n + 63) >>> 6];
+      for (int i = 0; i < n; i++) {
+        if (ranking[i] == i || (done[i >>> 6] & (1L << i)) != 0) {
+          continue;
+        }
+        System.arraycopy(data, i * cols + from, carry, 0, width);
+        for (int j = ranking[i]; j != i; j = ranking[j]) {
+          done[j >>> 6] |= 1L << j;
+          System.arraycopy(data, j * cols + from, next, 0, width);
+          System.arraycopy(carry, 0, data, j * cols + from, width);
+          int[] tmp = carry;
+          carry = next;
+          next = tmp;
+        }
+        System.arraycopy(carry, 0, data, i * cols + from, width);
+      }
+    });
+  }
+
+  /**
+   * Move column {@code j} of a row-major matrix to column {@code ranking[j]}, in place.
+   * Each row is copied to a buffer and scattered back, so the random writes stay within one row.
+   * Groups of rows are processed concurrently if the matrix is large.
+   *
+   * @param ranking a ranking of length not greater than the number of columns
+   * @param data a row-major matrix
+   * @param rows the number of rows
+   * @param cols the number of columns
+   */
+  static void applyToColumns(int[] ranking, int[] data, int rows, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(rows, grain(n), (from, to) -> {
+      int[] row = new int[n];
+      for (int r = from; r < to; r++) {
+        int offset = r * cols;
+        System.arraycopy(data, offset, row, 0, n);
+        for (int j = 0; j < n; j++)
+          data[offset + ranking[j]] = row[j];
+      }
+    });
+  }
+
+  /**
+   * Move row {@code i} of a row-major matrix to row {@code ranking[i]}, in place.
+   * The columns are split into strips that are processed concurrently if the matrix is large.
+   * In each strip, the cycles of the ranking are rotated with two temporary row segments.
+   *
+   * @param ranking a ranking of length not greater than the number of rows
+   * @param data a row-major matrix
+   * @param cols the number of columns
+   */
+  static void applyToRows(int[] ranking, long[] data, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(cols, grain(n), (from, to) -> {
+      int width = to - from;
+      long[] carry = new long[width];
+      long[] next = new long[width];
+      long[] done = new long[(n + 63) >>> 6];
+      for (int i = 0; i < n; i++) {
+        if (ranking[i] == i || (done[i >>> 6] & (1L << i)) != 0) {
+          continue;
+        }
+        System.arraycopy(data, i * cols + from, carry, 0, width);
+        for (int j = ranking[i]; j != i; j = ranking[j]) {
+          done[j >>> 6] |= 1L << j;
+          System.arraycopy(data, j * cols + from, next, 0, width);
+          System.arraycopy(carry, 0, data, j * cols + from, width);
+          long[] tmp = carry;
+          carry = next;
+          next = tmp;
+        }
+        System.arraycopy(carry, 0, data, i * cols + from, width);
+      }
+    });
+  }
+
+  /**
+   * Move column {@code j} of a row-major matrix to column {@code ranking[j]}, in place.
+   * Each row is copied to a buffer and scattered back, so the random writes stay within one row.
+   * Groups of rows are processed concurrently if the matrix is large.
+   *
+   * @param ranking a ranking of length not greater than the number of columns
+   * @param data a row-major matrix
+   * @param rows the number of rows
+   * @param cols the number of columns
+   */
+  static void applyToColumns(int[] ranking, long[] data, int rows, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(rows, grain(n), (from, to) -> {
+      long[] row = new long[n];
+      for (int r = from; r < to; r++) {
+        int offset = r * cols;
+        System.arraycopy(data, offset, row, 0, n);
+        for (int j = 0; j < n; j++)
+          data[offset + ranking[j]] = row[j];
+      }
+    });
+  }
+
+  /**
+   * Move row {@code i} of a row-major matrix to row {@code ranking[i]}, in place.
+   * The columns are split into strips that are processed concurrently if the matrix is large.
+   * In each strip, the cycles of the ranking are rotated with two temporary row segments.
+   *
+   * @param ranking a ranking of length not greater than the number of rows
+   * @param data a row-major matrix
+   * @param cols the number of columns
+   */
+  static void applyToRows(int[] ranking, float[] data, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(cols, grain(n), (from, to) -> {
+      int width = to - from;
+      float[] carry = new float[width];
+      float[] next = new float[width];
+      long[] done = new long[(n + 63) >>> 6];
+      for (int i = 0; i < n; i++) {
+        if (ranking[i] == i || (done[i >>> 6] & (1L << i)) != 0) {
+          continue;
+        }
+        System.arraycopy(data, i * cols + from, carry, 0, width);
+        for (int j = ranking[i]; j != i; j = ranking[j]) {
+          done[j >>> 6] |= 1L << j;
+          System.arraycopy(data, j * cols + from, next, 0, width);
+          System.arraycopy(carry, 0, data, j * cols + from, width);
+          float[] tmp = carry;
+          carry = next;
+          next = tmp;
+        }
+        System.arraycopy(carry, 0, data, i * cols + from, width);
+      }
+    });
+  }
+
+  /**
+   * Move column {@code j} of a row-major matrix to column {@code ranking[j]}, in place.
+   * Each row is copied to a buffer and scattered back, so the random writes stay within one row.
+   * Groups of rows are processed concurrently if the matrix is large.
+   *
+   * @param ranking a ranking of length not greater than the number of columns
+   * @param data a row-major matrix
+   * @param rows the number of rows
+   * @param cols the number of columns
+   */
+  static void applyToColumns(int[] ranking, float[] data, int rows, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(rows, grain(n), (from, to) -> {
+      float[] row = new float[n];
+      for (int r = from; r < to; r++) {
+        int offset = r * cols;
+        System.arraycopy(data, offset, row, 0, n);
+        for (int j = 0; j < n; j++)
+          data[offset + ranking[j]] = row[j];
+      }
+    });
+  }
+
+  /**
+   * Move row {@code i} of a row-major matrix to row {@code ranking[i]}, in place.
+   * The columns are split into strips that are processed concurrently if the matrix is large.
+   * In each strip, the cycles of the ranking are rotated with two temporary row segments.
+   *
+   * @param ranking a ranking of length not greater than the number of rows
+   * @param data a row-major matrix
+   * @param cols the number of columns
+   */
+  static void applyToRows(int[] ranking, double[] data, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(cols, grain(n), (from, to) -> {
+      int width = to - from;
+      double[] carry = new double[width];
+      double[] next = new double[width];
+      long[] done = new long[(n + 63) >>> 6];
+      for (int i = 0; i < n; i++) {
+        if (ranking[i] == i || (done[i >>> 6] & (1L << i)) != 0) {
+          continue;
+        }
+        System.arraycopy(data, i * cols + from, carry, 0, width);
+        for (int j = ranking[i]; j != i; j = ranking[j]) {
+          done[j >>> 6] |= 1L << j;
+          System.arraycopy(data, j * cols + from, next, 0, width);
+          System.arraycopy(carry, 0, data, j * cols + from, width);
+          double[] tmp = carry;
+          carry = next;
+          next = tmp;
+        }
+        System.arraycopy(carry, 0, data, i * cols + from, width);
+      }
+    });
+  }
+
+  /**
+   * Move column {@code j} of a row-major matrix to column {@code ranking[j]}, in place.
+   * Each row is copied to a buffer and scattered back, so the random writes stay within one row.
+   * Groups of rows are processed concurrently if the matrix is large.
+   *
+   * @param ranking a ranking of length not greater than the number of columns
+   * @param data a row-major matrix
+   * @param rows the number of rows
+   * @param cols the number of columns
+   */
+  static void applyToColumns(int[] ranking, double[] data, int rows, int cols) {
+    int n = ranking.length;
+    Parallel.forRange(rows, grain(n), (from, to) -> {
+      double[] row = new double[n];
+      for (int r = from; r < to; r++) {
+        int offset = r * cols;
+        System.arraycopy(data, offset, row, 0, n);
+        for (int j = 0; j < n; j++)
+          data[offset + ranking[j]] = row[j];
+      }
+    });
+  }
+}
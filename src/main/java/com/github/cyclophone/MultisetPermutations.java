@@ -0,0 +1,283 @@
+package com.github.cyclophone;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Enumeration of the distinct rearrangements of an array that may contain repeated values.</p>
+ *
+ * <p>Each distinct rearrangement is produced exactly once, in lexicographic order,
+ * so an array of length {@code n} with value multiplicities {@code m1, m2, ...}
+ * has {@code n! / (m1! * m2! * ...)} rearrangements rather than {@code n!}.</p>
+ *
+ * <p>The {@code forEach} methods reuse a single buffer and do not allocate per step.
+ * The {@code stream} methods produce fresh arrays; they are sized and split evenly if the
+ * number of rearrangements fits in a {@code long}.</p>
+ */
+public final class MultisetPermutations {
+
+  private MultisetPermutations() {
+  }
+
+  /**
+   * Replacement of the values of a sorted array by dense integer codes.
+   */
+  private static final class Codes {
+
+    // codes of the sorted array, ascending, starting at 0
+    final int[] codes;
+    // counts[c] is the multiplicity of code c
+    final int[] counts;
+
+    Codes(int n, IntPredicate sameAsPrevious) {
+      this.codes = new int[n];
+      int distinct = n == 0 ? 0 : 1;
+      for (int j = 1; j < n; j++) {
+        if (!sameAsPrevious.test(j)) {
+          distinct++;
+        }
+        codes[j] = distinct - 1;
+      }
+      this.counts = new int[distinct];
+      for (int code : codes)
+        counts[code]++;
+    }
+
+    BigInteger count() {
+      return multinomial(counts);
+    }
+
+    /**
+     * Get the index of the first element of each group in the sorted array.
+     *
+     * @return the start offsets of the codes
+     */
+    int[] starts() {
+      int[] starts = new int[counts.length];
+      for (int c = 1; c < counts.length; c++)
+        starts[c] = starts[c - 1] + counts[c - 1];
+      return starts;
+    }
+
+    <E> Stream<E> stream(Function<int[], E> mapper) {
+      BigInteger total = count();
+      Spliterator<E> spliterator = total.bitLength() < Long.SIZE ?
+          new MultisetSpliterator<>(counts, total.longValue(), mapper) :
+          Rankings.lexicographicWalk(codes.clone(), mapper);
+      return StreamSupport.stream(spliterator, false);
+    }
+  }
+
+  /**
+   * Calculate the number of distinct arrangements of a multiset.
+   *
+   * @param counts the multiplicities
+   * @return the multinomial coefficient
+   */
+  private static BigInteger multinomial(int[] counts) {
+    BigInteger result = BigInteger.ONE;
+    long placed = 0;
+    for (int count : counts) {
+      for (int i = 1; i <= count; i++) {
+        placed++;
+        // the intermediate result is a product of binomial coefficients, so the division is exact
+        result = result.multiply(BigInteger.valueOf(placed)).divide(BigInteger.valueOf(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Visit the distinct rearrangements of an array in lexicographic order.
+   *
+   * @param values an array, which is not modified
+   * @param visitor a callback; the array it receives is reused and must not be modified
+   */
+  public static void forEach(int[] values, Consumer<int[]> visitor) {
+    int[] buffer = values.clone();
+    Arrays.sort(buffer);
+    do {
+      visitor.accept(buffer);
+    } while (Rankings.nextPermutation(buffer) >= 0);
+  }
+
+  /**
+   * Visit the distinct rearrangements of an array in lexicographic order.
+   *
+   * @param values an array, which is not modified
+   * @param visitor a callback; the array it receives is reused and must not be modified
+   */
+  public static void forEach(long[] values, Consumer<long[]> visitor) {
+    long[] buffer = values.clone();
+    Arrays.sort(buffer);
+    Codes codes = new Codes(buffer.length, j -> buffer[j] == buffer[j - 1]);
+    long[] distinct = distinct(buffer, codes);
+    int pivot = 0;
+    do {
+      for (int j = pivot; j < buffer.length; j++)
+        buffer[j] = distinct[codes.codes[j]];
+      visitor.accept(buffer);
+    } while ((pivot = Rankings.nextPermutation(codes.codes)) >= 0);
+  }
+
+  /**
+   * Visit the distinct rearrangements of an array in lexicographic order.
+   * Two elements are considered equal if the comparator returns {@code 0}.
+   * Each array that the visitor receives is a rearrangement of the original elements,
+   * where elements that are equal keep their relative order from {@code values}.
+   *
+   * @param values an array, which is not modified
+   * @param comparator a comparator
+   * @param visitor a callback; the array it receives is reused and must not be modified
+   * @param <T> element type
+   */
+  public static <T> void forEach(T[] values, Comparator<? super T> comparator, Consumer<T[]> visitor) {
+    T[] sorted = values.clone();
+    Arrays.sort(sorted, comparator);
+    Codes codes = new Codes(sorted.length, j -> comparator.compare(sorted[j], sorted[j - 1]) == 0);
+    int[] starts = codes.starts();
+    int[] next = new int[starts.length];
+    T[] buffer = sorted.clone();
+    do {
+      fill(sorted, starts, next, codes.codes, buffer);
+      visitor.accept(buffer);
+    } while (Rankings.nextPermutation(codes.codes) >= 0);
+  }
+
+  /**
+   * Stream the distinct rearrangements of an array in lexicographic order.
+   *
+   * @param values an array, which is not modified
+   * @return a stream of new arrays
+   */
+  public static Stream<int[]> stream(int[] values) {
+    int[] sorted = values.clone();
+    Arrays.sort(sorted);
+    Codes codes = new Codes(sorted.length, j -> sorted[j] == sorted[j - 1]);
+    int[] distinct = distinct(sorted, codes);
+    return codes.stream(c -> {
+      int[] result = new int[c.length];
+      for (int j = 0; j < c.length; j++)
+        result[j] = distinct[c[j]];
+      return result;
+    });
+  }
+
+  /**
+   * Stream the distinct rearrangements of an array in lexicographic order.
+   *
+   * @param values an array, which is not modified
+   * @return a stream of new arrays
+   */
+  public static Stream<long[]> stream(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    Codes codes = new Codes(sorted.length, j -> sorted[j] == sorted[j - 1]);
+    long[] distinct = distinct(sorted, codes);
+    return codes.stream(c -> {
+      long[] result = new long[c.length];
+      for (int j = 0; j < c.length; j++)
+        result[j] = distinct[c[j]];
+      return result;
+    });
+  }
+
+  /**
+   * Stream the distinct rearrangements of an array in lexicographic order.
+   * Two elements are considered equal if the comparator returns {@code 0}.
+   * Each array in the stream is a rearrangement of the original elements,
+   * where elements that are equal keep their relative order from {@code values}.
+   *
+   * @param values an array, which is not modified
+   * @param comparator a comparator
+   * @param <T> element type
+   * @return a stream of new arrays
+   */
+  public static <T> Stream<T[]> stream(T[] values, Comparator<? super T> comparator) {
+    T[] sorted = values.clone();
+    Arrays.sort(sorted, comparator);
+    Codes codes = new Codes(sorted.length, j -> comparator.compare(sorted[j], sorted[j - 1]) == 0);
+    int[] starts = codes.starts();
+    return codes.stream(c -> {
+      T[] result = sorted.clone();
+      fill(sorted, starts, new int[starts.length], c, result);
+      return result;
+    });
+  }
+
+  /**
+   * Count the distinct rearrangements of an array.
+   *
+   * @param values an array
+   * @return the number of distinct rearrangements
+   */
+  public static BigInteger count(int[] values) {
+    int[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return new Codes(sorted.length, j -> sorted[j] == sorted[j - 1]).count();
+  }
+
+  /**
+   * Count the distinct rearrangements of an array.
+   *
+   * @param values an array
+   * @return the number of distinct rearrangements
+   */
+  public static BigInteger count(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return new Codes(sorted.length, j -> sorted[j] == sorted[j - 1]).count();
+  }
+
+  /**
+   * Count the distinct rearrangements of an array.
+   *
+   * @param values an array
+   * @param comparator a comparator
+   * @param <T> element type
+   * @return the number of distinct rearrangements
+   */
+  public static <T> BigInteger count(T[] values, Comparator<? super T> comparator) {
+    T[] sorted = values.clone();
+    Arrays.sort(sorted, comparator);
+    return new Codes(sorted.length, j -> comparator.compare(sorted[j], sorted[j - 1]) == 0).count();
+  }
+
+  private static int[] distinct(int[] sorted, Codes codes) {
+    int[] distinct = new int[codes.counts.length];
+    for (int j = 0; j < sorted.length; j++)
+      distinct[codes.codes[j]] = sorted[j];
+    return distinct;
+  }
+
+  private static long[] distinct(long[] sorted, Codes codes) {
+    long[] distinct = new long[codes.counts.length];
+    for (int j = 0; j < sorted.length; j++)
+      distinct[codes.codes[j]] = sorted[j];
+    return distinct;
+  }
+
+  /**
+   * Store the elements of the stably sorted array in the order given by the codes.
+   * The {@code k}th occurrence of a code receives the {@code k}th element of its group,
+   * so the result contains each original element exactly once.
+   *
+   * @param sorted the elements, stably sorted
+   * @param starts the start offset of each group in {@code sorted}
+   * @param next scratch space of the same length as {@code starts}
+   * @param codes a rearrangement of the codes of {@code sorted}
+   * @param dest the result array
+   */
+  private static <T> void fill(T[] sorted, int[] starts, int[] next, int[] codes, T[] dest) {
+    System.arraycopy(starts, 0, next, 0, starts.length);
+    for (int j = 0; j < codes.length; j++)
+      dest[j] = sorted[next[codes[j]]++];
+  }
+}
@@ -0,0 +1,144 @@
+package com.github.cyclophone;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A spliterator over the distinct arrangements of a multiset of codes in lexicographic order,
+ * restricted to a range of lexicographic ranks.
+ * Like {@link SymmetricGroupSpliterator}, it splits by rank, seeds each half by unranking,
+ * and advances in place by {@link Rankings#nextPermutation(int[])}.
+ * This requires the number of arrangements to fit in a {@code long}.
+ *
+ * @param <E> element type
+ */
+final class MultisetSpliterator<E> implements Spliterator<E> {
+
+  private static final int CHARACTERISTICS = SIZED | SUBSIZED | ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+
+  // counts[c] is the multiplicity of code c
+  private final int[] counts;
+  private final int n;
+  private final long total;
+  private final Function<int[], E> mapper;
+
+  // rank of the next element
+  private long from;
+  // rank limit, exclusive
+  private final long to;
+
+  // null before the first element; otherwise the arrangement of rank from - 1
+  private int[] current;
+
+  /**
+   * @param counts the multiplicity of each code
+   * @param total the number of distinct arrangements, which must fit in a {@code long}
+   * @param mapper a function that creates an element from an array of codes;
+   *               the array is reused and must not be retained by the mapper
+   */
+  MultisetSpliterator(int[] counts, long total, Function<int[], E> mapper) {
+    this(counts, total, 0, total, mapper, null);
+  }
+
+  private MultisetSpliterator(int[] counts, long total, long from, long to, Function<int[], E> mapper, int[] current) {
+    this.counts = counts;
+    int n = 0;
+    for (int count : counts)
+      n += count;
+    this.n = n;
+    this.total = total;
+    this.from = from;
+    this.to = to;
+    this.mapper = mapper;
+    this.current = current;
+  }
+
+  /**
+   * Find the arrangement with the given lexicographic rank.
+   * At each position, the arrangements are grouped by their code at that position,
+   * and the size of each group is derived from the size of the enclosing group.
+   */
+  private int[] unrank(long rank) {
+    int[] remaining = counts.clone();
+    int[] result = new int[n];
+    long size = total;
+    for (int pos = 0; pos < n; pos++) {
+      int left = n - pos;
+      for (int code = 0; code < remaining.length; code++) {
+        int count = remaining[code];
+        if (count == 0) {
+          continue;
+        }
+        // size * count / left, which is an integer, without overflow
+        int g = gcd(count, left);
+        long block = size / (left / g) * (count / g);
+        if (rank < block) {
+          result[pos] = code;
+          remaining[code]--;
+          size = block;
+          break;
+        }
+        rank -= block;
+      }
+    }
+    return result;
+  }
+
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  private int[] next() {
+    if (current == null) {
+      current = unrank(from);
+    } else {
+      Rankings.nextPermutation(current);
+    }
+    from++;
+    return current;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super E> action) {
+    if (from >= to) {
+      return false;
+    }
+    action.accept(mapper.apply(next()));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super E> action) {
+    while (from < to)
+      action.accept(mapper.apply(next()));
+  }
+
+  @Override
+  public Spliterator<E> trySplit() {
+    long size = to - from;
+    if (size < 2) {
+      return null;
+    }
+    long mid = from + size / 2;
+    Spliterator<E> prefix = new MultisetSpliterator<>(counts, total, from, mid, mapper, current);
+    from = mid;
+    current = null;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return to - from;
+  }
+
+  @Override
+  public int characteristics() {
+    return CHARACTERISTICS;
+  }
+}
@@ -0,0 +1,498 @@
+package com.github.cyclophone;
+
+/**
+ * <p>A mutable permutation of a fixed degree, for loops that compose or invert many permutations.</p>
+ *
+ * <p>An instance owns a ranking of length {@code degree()} and a few scratch buffers of the same length,
+ * which are allocated on first use. After that, none of the {@code Into} and {@code InPlace} methods allocate.
+ * Arguments of type {@link Permutation} may be shorter than the degree, but not longer.</p>
+ *
+ * <p>{@link #freeze()} returns a {@link Permutation} that shares the ranking of this instance, if possible.
+ * The next modification of this instance then works on a new array,
+ * so the frozen permutation stays unchanged.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class MutablePermutation {
+
+  private final int degree;
+
+  private int[] ranking;
+
+  // true if ranking is referenced by a frozen Permutation
+  private boolean shared;
+
+  // lazily allocated buffers, see buffer(int)
+  private int[] tmp;
+  private int[] scratch0;
+  private int[] scratch1;
+
+  /**
+   * Create a new instance that holds the identity.
+   *
+   * @param degree a non-negative number
+   * @exception java.lang.IllegalArgumentException if {@code degree} is negative
+   */
+  public MutablePermutation(int degree) {
+    if (degree < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    this.degree = degree;
+    this.ranking = ArrayUtil.range(degree);
+  }
+
+  /**
+   * Create a new instance that holds the given permutation.
+   *
+   * @param p a permutation
+   * @param degree a number not less than {@code p.length()}
+   * @return a new instance
+   * @exception java.lang.IllegalArgumentException if {@code degree} is less than {@code p.length()}
+   */
+  public static MutablePermutation of(Permutation p, int degree) {
+    MutablePermutation result = new MutablePermutation(degree);
+    result.set(p);
+    return result;
+  }
+
+  /**
+   * Get the length of the ranking of this instance.
+   *
+   * @return the degree
+   */
+  public int degree() {
+    return degree;
+  }
+
+  /**
+   * Move an index.
+   *
+   * @param i a non-negative number
+   * @return the image of {@code i}
+   * @exception java.lang.IllegalArgumentException if {@code i} is negative
+   */
+  public int apply(int i) {
+    return Rankings.apply(ranking, i);
+  }
+
+  /**
+   * Copy the ranking of this instance into an array.
+   *
+   * @param dest an array of length not less than {@code degree()}
+   * @exception java.lang.IllegalArgumentException if {@code dest} is too short
+   */
+  public void copyInto(int[] dest) {
+    ArrayUtil.checkLength(degree, dest.length);
+    System.arraycopy(ranking, 0, dest, 0, degree);
+  }
+
+  /**
+   * Reset this instance to the identity.
+   *
+   * @return this instance
+   */
+  public MutablePermutation setIdentity() {
+    int[] out = writable();
+    for (int i = 0; i < degree; i++)
+      out[i] = i;
+    return this;
+  }
+
+  /**
+   * Replace the contents of this instance.
+   *
+   * @param p a permutation of length not greater than {@code degree()}
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if {@code p} is too long
+   */
+  public MutablePermutation set(Permutation p) {
+    checkLength(p);
+    PackedRankings.unpack(p.packed(), writable());
+    return this;
+  }
+
+  /**
+   * Replace the contents of this instance.
+   *
+   * @param other an instance of the same degree
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if the degrees are different
+   */
+  public MutablePermutation set(MutablePermutation other) {
+    checkDegree(other);
+    if (other != this) {
+      System.arraycopy(other.ranking, 0, writable(), 0, degree);
+    }
+    return this;
+  }
+
+  /**
+   * Store the product {@code a.compose(b)} in {@code dest}.
+   *
+   * @param a a permutation of length not greater than {@code dest.degree()}
+   * @param b a permutation of length not greater than {@code dest.degree()}
+   * @param dest the destination
+   * @exception java.lang.IllegalArgumentException if {@code a} or {@code b} is too long
+   * @see Permutation#compose(Permutation)
+   */
+  public static void composeInto(Permutation a, Permutation b, MutablePermutation dest) {
+    dest.checkLength(a);
+    dest.checkLength(b);
+    int[] lhs = dest.ints(a, 0);
+    int[] rhs = dest.ints(b, 1);
+    int[] out = dest.writable();
+    for (int i = 0; i < out.length; i++)
+      out[i] = lhs[rhs[i]];
+  }
+
+  /**
+   * Store the product of {@code a} and {@code b} in {@code dest}.
+   * The destination may be the same instance as {@code a} or {@code b}.
+   *
+   * @param a an instance of the same degree as {@code dest}
+   * @param b an instance of the same degree as {@code dest}
+   * @param dest the destination
+   * @exception java.lang.IllegalArgumentException if the degrees are different
+   */
+  public static void composeInto(MutablePermutation a, MutablePermutation b, MutablePermutation dest) {
+    dest.checkDegree(a);
+    dest.checkDegree(b);
+    int[] lhs = a.ranking;
+    int[] rhs = b.ranking;
+    int[] out = dest.buffer(-1);
+    for (int i = 0; i < out.length; i++)
+      out[i] = lhs[rhs[i]];
+    dest.swap();
+  }
+
+  /**
+   * Store the inverse of {@code a} in {@code dest}.
+   *
+   * @param a a permutation of length not greater than {@code dest.degree()}
+   * @param dest the destination
+   * @exception java.lang.IllegalArgumentException if {@code a} is too long
+   * @see Permutation#invert()
+   */
+  public static void invertInto(Permutation a, MutablePermutation dest) {
+    dest.checkLength(a);
+    int[] in = dest.ints(a, 0);
+    int[] out = dest.writable();
+    for (int i = 0; i < out.length; i++)
+      out[in[i]] = i;
+  }
+
+  /**
+   * Store the inverse of {@code a} in {@code dest}.
+   * The destination may be the same instance as {@code a}.
+   *
+   * @param a an instance of the same degree as {@code dest}
+   * @param dest the destination
+   * @exception java.lang.IllegalArgumentException if the degrees are different
+   */
+  public static void invertInto(MutablePermutation a, MutablePermutation dest) {
+    dest.checkDegree(a);
+    int[] in = a.ranking;
+    int[] out = dest.buffer(-1);
+    for (int i = 0; i < out.length; i++)
+      out[in[i]] = i;
+    dest.swap();
+  }
+
+  /**
+   * Replace this instance with its inverse.
+   * This does not use any of the scratch buffers.
+   *
+   * @return this instance
+   */
+  public MutablePermutation invertInPlace() {
+    Rankings.invertInPlace(writableCopy());
+    return this;
+  }
+
+  /**
+   * Replace this instance with the lexicographically next permutation of the same degree.
+   * This takes amortized constant time.
+   *
+   * @return false if this instance was the last permutation, in which case it is unchanged
+   * @see Permutation#compareTo(Permutation)
+   */
+  public boolean nextInPlace() {
+    return Rankings.nextPermutation(writableCopy()) >= 0;
+  }
+
+  /**
+   * Replace this instance with the lexicographically previous permutation of the same degree.
+   * This takes amortized constant time.
+   *
+   * @return false if this instance was the identity, in which case it is unchanged
+   */
+  public boolean previousInPlace() {
+    return Rankings.prevPermutation(writableCopy()) >= 0;
+  }
+
+  /**
+   * Replace this instance with its {@code n}th power, using binary exponentiation.
+   * This takes {@code O(degree * log |n|)} steps and does not allocate once the scratch buffers exist.
+   * If the cycle structure is not needed anyway, this can be used instead of {@link Permutation#pow(long)},
+   * for example after the base has been built up by a sequence of multiplications.
+   *
+   * @param n any number
+   * @return this instance
+   * @see Permutation#pow(long)
+   */
+  public MutablePermutation powInPlace(long n) {
+    int[] base = buffer(1);
+    System.arraycopy(ranking, 0, base, 0, degree);
+    if (n < 0) {
+      Rankings.invertInPlace(base);
+      n = -n; // Long.MIN_VALUE stays negative, but the loop treats n as unsigned
+    }
+    int[] result = buffer(0);
+    for (int i = 0; i < degree; i++)
+      result[i] = i;
+    int[] out = buffer(-1);
+    while (n != 0) {
+      if ((n & 1) != 0) {
+        for (int i = 0; i < degree; i++)
+          out[i] = result[base[i]];
+        int[] t = result;
+        result = out;
+        out = t;
+      }
+      n >>>= 1;
+      if (n != 0) {
+        for (int i = 0; i < degree; i++)
+          out[i] = base[base[i]];
+        int[] t = base;
+        base = out;
+        out = t;
+      }
+    }
+    System.arraycopy(result, 0, writable(), 0, degree);
+    return this;
+  }
+
+  /**
+   * Replace this instance with {@code p.compose(this)}.
+   *
+   * @param p a permutation of length not greater than {@code degree()}
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if {@code p} is too long
+   */
+  public MutablePermutation leftMultiplyInPlace(Permutation p) {
+    checkLength(p);
+    return leftMultiply(ints(p, 0));
+  }
+
+  /**
+   * Replace this instance with the product of {@code p} and this instance.
+   *
+   * @param p an instance of the same degree
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if the degrees are different
+   */
+  public MutablePermutation leftMultiplyInPlace(MutablePermutation p) {
+    checkDegree(p);
+    if (p == this) {
+      composeInto(this, this, this);
+      return this;
+    }
+    return leftMultiply(p.ranking);
+  }
+
+  private MutablePermutation leftMultiply(int[] lhs) {
+    int[] out = writableCopy();
+    for (int i = 0; i < out.length; i++)
+      out[i] = lhs[out[i]];
+    return this;
+  }
+
+  /**
+   * Replace this instance with {@code this.compose(p)}.
+   *
+   * @param p a permutation of length not greater than {@code degree()}
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if {@code p} is too long
+   */
+  public MutablePermutation rightMultiplyInPlace(Permutation p) {
+    checkLength(p);
+    return rightMultiply(ints(p, 0));
+  }
+
+  /**
+   * Replace this instance with the product of this instance and {@code p}.
+   *
+   * @param p an instance of the same degree
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if the degrees are different
+   */
+  public MutablePermutation rightMultiplyInPlace(MutablePermutation p) {
+    checkDegree(p);
+    return rightMultiply(p.ranking);
+  }
+
+  private MutablePermutation rightMultiply(int[] rhs) {
+    int[] lhs = ranking;
+    int[] out = buffer(-1);
+    for (int i = 0; i < out.length; i++)
+      out[i] = lhs[rhs[i]];
+    swap();
+    return this;
+  }
+
+  /**
+   * Replace this instance with {@code this.conjugationBy(h)}, which is {@code h^-1 * this * h}.
+   *
+   * @param h a permutation of length not greater than {@code degree()}
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if {@code h} is too long
+   * @see Permutation#conjugationBy(Permutation)
+   */
+  public MutablePermutation conjugateInPlace(Permutation h) {
+    checkLength(h);
+    return conjugate(ints(h, 0));
+  }
+
+  /**
+   * Replace this instance with {@code h^-1 * this * h}.
+   *
+   * @param h an instance of the same degree
+   * @return this instance
+   * @exception java.lang.IllegalArgumentException if the degrees are different
+   */
+  public MutablePermutation conjugateInPlace(MutablePermutation h) {
+    checkDegree(h);
+    if (h == this) {
+      return this;
+    }
+    return conjugate(h.ranking);
+  }
+
+  private MutablePermutation conjugate(int[] h) {
+    int[] inverse = buffer(1);
+    for (int i = 0; i < degree; i++)
+      inverse[h[i]] = i;
+    int[] p = ranking;
+    int[] out = buffer(-1);
+    for (int i = 0; i < out.length; i++)
+      out[i] = inverse[p[h[i]]];
+    swap();
+    return this;
+  }
+
+  /**
+   * Return a permutation that is equal to this instance.
+   * The ranking of this instance is not copied, unless it can be trimmed.
+   * Therefore, unlike other permutations, the result may store its ranking as an {@code int[]}
+   * even if a narrower type would be enough.
+   * This instance can still be modified afterwards, without affecting the result.
+   *
+   * @return a permutation
+   */
+  public Permutation freeze() {
+    Permutation result = Permutation.wrap(ranking);
+    shared = true;
+    return result;
+  }
+
+  /**
+   * Return a permutation that is equal to this instance. The ranking is copied.
+   *
+   * @return a permutation
+   */
+  public Permutation toPermutation() {
+    return Permutation.define0(ranking);
+  }
+
+  /**
+   * Print this permutation using cycle notation.
+   *
+   * @return a string
+   */
+  @Override
+  public String toString() {
+    return toPermutation().toString();
+  }
+
+  /* ================= buffers ================= */
+
+  /**
+   * Get the ranking of {@code p} as an {@code int[]} of length {@code degree}.
+   *
+   * @param p a permutation that is not longer than {@code degree}
+   * @param scratch the index of the scratch buffer to use, if {@code p} has to be unpacked
+   * @return the ranking of {@code p}, which must not be modified
+   */
+  private int[] ints(Permutation p, int scratch) {
+    Object packed = p.packed();
+    if (packed instanceof int[] && ((int[]) packed).length == degree) {
+      return (int[]) packed;
+    }
+    int[] result = buffer(scratch);
+    PackedRankings.unpack(packed, result);
+    return result;
+  }
+
+  /**
+   * Get one of the buffers: {@code -1} for {@code tmp}, or {@code 0} or {@code 1} for the scratch buffers.
+   * The {@code tmp} buffer becomes the new ranking in {@link #swap()}.
+   */
+  private int[] buffer(int index) {
+    switch (index) {
+      case -1:
+        if (tmp == null) {
+          tmp = new int[degree];
+        }
+        return tmp;
+      case 0:
+        if (scratch0 == null) {
+          scratch0 = new int[degree];
+        }
+        return scratch0;
+      default:
+        if (scratch1 == null) {
+          scratch1 = new int[degree];
+        }
+        return scratch1;
+    }
+  }
+
+  // make tmp the new ranking
+  private void swap() {
+    int[] old = ranking;
+    ranking = tmp;
+    tmp = shared ? null : old;
+    shared = false;
+  }
+
+  // get the ranking for writing, without preserving its contents
+  private int[] writable() {
+    if (shared) {
+      ranking = new int[degree];
+      shared = false;
+    }
+    return ranking;
+  }
+
+  // get the ranking for writing, preserving its contents
+  private int[] writableCopy() {
+    if (shared) {
+      ranking = ranking.clone();
+      shared = false;
+    }
+    return ranking;
+  }
+
+  private void checkLength(Permutation p) {
+    if (p.length() > degree) {
+      throw new IllegalArgumentException("permutation too long: length is " + p.length()
+          + ", but degree is " + degree);
+    }
+  }
+
+  private void checkDegree(MutablePermutation other) {
+    if (other.degree != degree) {
+      ArrayUtil.lengthFailure();
+    }
+  }
+}
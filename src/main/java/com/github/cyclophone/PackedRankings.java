@@ -0,0 +1,253 @@
+package com.github.cyclophone;
+
+import java.util.Arrays;
+
+/**
+ * <p>A collection of methods that operate on packed rankings.</p>
+ *
+ * <p>A packed ranking is a ranking that is stored in the narrowest array type that can hold its values:
+ * a {@code byte[]} if its length is not greater than {@code 256},
+ * a {@code short[]} if its length is not greater than {@code 65536},
+ * and an {@code int[]} otherwise.
+ * The elements of a {@code byte[]} or {@code short[]} ranking are unsigned.
+ * An {@code int[]} is also accepted as a packed ranking of any length,
+ * because {@link MutablePermutation#freeze()} shares its unpacked ranking instead of copying it.
+ * All methods in this class accept operands of mixed widths,
+ * but operands of different widths take a slower path.</p>
+ */
+final class PackedRankings {
+
+  private static final int BYTE_LIMIT = 1 << 8;
+  private static final int SHORT_LIMIT = 1 << 16;
+
+  private PackedRankings() {
+  }
+
+  /**
+   * Store the first {@code length} elements of a ranking in the narrowest possible array type.
+   * If the narrowest type is {@code int[]} and {@code length == ranking.length}, the input is returned.
+   *
+   * @param ranking a ranking
+   * @param length the number of elements to pack
+   * @return the packed ranking
+   */
+  static Object pack(int[] ranking, int length) {
+    if (length <= BYTE_LIMIT) {
+      byte[] result = new byte[length];
+      for (int i = 0; i < length; i++)
+        result[i] = (byte) ranking[i];
+      return result;
+    }
+    if (length <= SHORT_LIMIT) {
+      short[] result = new short[length];
+      for (int i = 0; i < length; i++)
+        result[i] = (short) ranking[i];
+      return result;
+    }
+    return length == ranking.length ? ranking : Arrays.copyOf(ranking, length);
+  }
+
+  /**
+   * Get the ranking as an {@code int[]}.
+   * If the packed ranking is an {@code int[]}, it is returned without copying,
+   * so the result must not be modified.
+   *
+   * @param packed a packed ranking
+   * @return the ranking as an {@code int[]}
+   */
+  static int[] ints(Object packed) {
+    if (packed instanceof int[]) {
+      return (int[]) packed;
+    }
+    int[] result = new int[length(packed)];
+    unpack(packed, result);
+    return result;
+  }
+
+  /**
+   * Copy a packed ranking into an {@code int[]}.
+   * Indexes of {@code dest} that are not less than the length of the ranking are set to themselves.
+   *
+   * @param packed a packed ranking
+   * @param dest an array that is not shorter than the ranking
+   */
+  static void unpack(Object packed, int[] dest) {
+    int length = length(packed);
+    if (packed instanceof byte[]) {
+      byte[] ranking = (byte[]) packed;
+      for (int i = 0; i < length; i++)
+        dest[i] = ranking[i] & 0xff;
+    } else if (packed instanceof short[]) {
+      short[] ranking = (short[]) packed;
+      for (int i = 0; i < length; i++)
+        dest[i] = ranking[i] & 0xffff;
+    } else {
+      System.arraycopy((int[]) packed, 0, dest, 0, length);
+    }
+    for (int i = length; i < dest.length; i++)
+      dest[i] = i;
+  }
+
+  static int length(Object packed) {
+    if (packed instanceof byte[]) {
+      return ((byte[]) packed).length;
+    }
+    if (packed instanceof short[]) {
+      return ((short[]) packed).length;
+    }
+    return ((int[]) packed).length;
+  }
+
+  /**
+   * Get the value of a packed ranking at index {@code i}.
+   *
+   * @param packed a packed ranking
+   * @param i a non-negative number
+   * @return the value at {@code i}, or {@code i} if {@code i} is not less than the length of the ranking
+   */
+  static int get(Object packed, int i) {
+    if (packed instanceof byte[]) {
+      byte[] ranking = (byte[]) packed;
+      return i < ranking.length ? ranking[i] & 0xff : i;
+    }
+    if (packed instanceof short[]) {
+      short[] ranking = (short[]) packed;
+      return i < ranking.length ? ranking[i] & 0xffff : i;
+    }
+    int[] ranking = (int[]) packed;
+    return i < ranking.length ? ranking[i] : i;
+  }
+
+  /**
+   * Find the length that this ranking can be safely trimmed to,
+   * and store the trimmed ranking in the narrowest possible type.
+   *
+   * @param packed a packed ranking
+   * @return the trimmed ranking; this is the input if it was already trimmed and packed
+   */
+  static Object trim(Object packed) {
+    int length = length(packed);
+    int trimmed = length;
+    while (trimmed > 0 && get(packed, trimmed - 1) == trimmed - 1)
+      trimmed--;
+    if (trimmed == length && !(packed instanceof int[] && length <= SHORT_LIMIT)) {
+      return packed;
+    }
+    return pack(ints(packed), trimmed);
+  }
+
+  /**
+   * Multiply two packed rankings.
+   * The result is packed according to the greater length of the operands, and may not be trimmed.
+   *
+   * @param lhs a packed ranking
+   * @param rhs another packed ranking
+   * @return the product of the input rankings
+   */
+  static Object comp(Object lhs, Object rhs) {
+    if (lhs instanceof byte[] && rhs instanceof byte[]) {
+      byte[] a = (byte[]) lhs;
+      byte[] b = (byte[]) rhs;
+      byte[] result = new byte[Math.max(a.length, b.length)];
+      for (int i = 0; i < result.length; i++) {
+        int n = i < b.length ? b[i] & 0xff : i;
+        result[i] = n < a.length ? a[n] : (byte) n;
+      }
+      return result;
+    }
+    if (lhs instanceof short[] && rhs instanceof short[]) {
+      short[] a = (short[]) lhs;
+      short[] b = (short[]) rhs;
+      short[] result = new short[Math.max(a.length, b.length)];
+      for (int i = 0; i < result.length; i++) {
+        int n = i < b.length ? b[i] & 0xffff : i;
+        result[i] = n < a.length ? a[n] : (short) n;
+      }
+      return result;
+    }
+    if (lhs instanceof int[] && rhs instanceof int[]) {
+      int[] result = Rankings.comp((int[]) lhs, (int[]) rhs);
+      return pack(result, result.length);
+    }
+    int length = Math.max(length(lhs), length(rhs));
+    int[] result = new int[length];
+    for (int i = 0; i < length; i++)
+      result[i] = get(lhs, get(rhs, i));
+    return pack(result, length);
+  }
+
+  /**
+   * Calculate the inverse of a packed ranking.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param packed a packed ranking
+   * @return the inverse ranking, with the same width as the input
+   */
+  static Object invert(Object packed) {
+    if (packed instanceof byte[]) {
+      byte[] ranking = (byte[]) packed;
+      byte[] inverted = new byte[ranking.length];
+      for (int i = 0; i < ranking.length; i++)
+        inverted[ranking[i] & 0xff] = (byte) i;
+      return inverted;
+    }
+    if (packed instanceof short[]) {
+      short[] ranking = (short[]) packed;
+      short[] inverted = new short[ranking.length];
+      for (int i = 0; i < ranking.length; i++)
+        inverted[ranking[i] & 0xffff] = (short) i;
+      return inverted;
+    }
+    return Rankings.invert((int[]) packed);
+  }
+
+  /**
+   * Compare two trimmed packed rankings lexicographically, as if both were filled up to the same length.
+   * If one of them is a prefix of the other, then the shorter one is smaller:
+   * the first index where the longer one is not a fixed point is mapped to a greater index.
+   * Because of this, the result does not depend on the length that the rankings are filled up to.
+   *
+   * @param lhs a trimmed packed ranking
+   * @param rhs another trimmed packed ranking
+   * @return comparison result
+   */
+  static int compare(Object lhs, Object rhs) {
+    int length = length(lhs);
+    int otherLength = length(rhs);
+    int min = Math.min(length, otherLength);
+    for (int i = 0; i < min; i++) {
+      int diff = get(lhs, i) - get(rhs, i);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return length - otherLength;
+  }
+
+  static boolean equals(Object lhs, Object rhs) {
+    if (lhs instanceof byte[] && rhs instanceof byte[]) {
+      return Arrays.equals((byte[]) lhs, (byte[]) rhs);
+    }
+    if (lhs instanceof short[] && rhs instanceof short[]) {
+      return Arrays.equals((short[]) lhs, (short[]) rhs);
+    }
+    if (lhs instanceof int[] && rhs instanceof int[]) {
+      return Arrays.equals((int[]) lhs, (int[]) rhs);
+    }
+    return compare(lhs, rhs) == 0;
+  }
+
+  /**
+   * Calculate a hash code that does not depend on the width of the packed ranking.
+   *
+   * @param packed a packed ranking
+   * @return the same value as {@link Arrays#hashCode(int[])} for the unpacked ranking
+   */
+  static int hashCode(Object packed) {
+    int length = length(packed);
+    int result = 1;
+    for (int i = 0; i < length; i++)
+      result = 31 * result + get(packed, i);
+    return result;
+  }
+}
@@ -0,0 +1,104 @@
+package com.github.cyclophone;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Helper for running independent per-index loops in the common {@link ForkJoinPool}.
+ */
+final class Parallel {
+
+  /**
+   * Loops over fewer indexes than this are not split.
+   */
+  static final int THRESHOLD = 1 << 16;
+
+  private Parallel() {
+  }
+
+  /**
+   * The body of a loop over the indexes {@code from} (inclusive) to {@code to} (exclusive).
+   */
+  interface RangeAction {
+    void run(int from, int to);
+  }
+
+  /**
+   * Run the action on the index range from {@code 0} to {@code length}.
+   * If {@code length} is less than {@link #THRESHOLD}, the action runs in the calling thread.
+   * Otherwise the range is split into disjoint chunks, which may run concurrently.
+   *
+   * @param length the number of indexes
+   * @param action the loop body
+   */
+  static void forRange(int length, RangeAction action) {
+    forRange(length, THRESHOLD, action);
+  }
+
+  /**
+   * Run the action on the index range from {@code 0} to {@code length}.
+   * If {@code length} is less than {@code grain}, the action runs in the calling thread.
+   * Otherwise the range is split into disjoint chunks of at least {@code grain} indexes, which may run concurrently.
+   * This is useful if each index stands for a lot of work, like a row of a matrix.
+   *
+   * @param length the number of indexes
+   * @param grain the minimum number of indexes per chunk, a positive number
+   * @param action the loop body
+   */
+  static void forRange(int length, int grain, RangeAction action) {
+    if (length < grain) {
+      action.run(0, length);
+      return;
+    }
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int chunk = Math.max(grain, length / (4 * pool.getParallelism()));
+    pool.invoke(new RangeTask(0, length, chunk, action));
+  }
+
+  /**
+   * Run the action once for each index from {@code 0} to {@code count}.
+   * Each index may run concurrently with the others, so the action should do a substantial amount of work.
+   *
+   * @param count the number of indexes
+   * @param action the loop body
+   */
+  static void forEach(int count, IntConsumer action) {
+    if (count <= 1) {
+      for (int i = 0; i < count; i++)
+        action.accept(i);
+      return;
+    }
+    ForkJoinPool.commonPool().invoke(new RangeTask(0, count, 1, (from, to) -> {
+      for (int i = from; i < to; i++)
+        action.accept(i);
+    }));
+  }
+
+  private static final class RangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final int chunk;
+    private final RangeAction action;
+
+    RangeTask(int from, int to, int chunk, RangeAction action) {
+      this.from = from;
+      this.to = to;
+      this.chunk = chunk;
+      this.action = action;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= chunk) {
+        action.run(from, to);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new RangeTask(from, mid, chunk, action), new RangeTask(mid, to, chunk, action));
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.github.cyclophone;
+
+import java.lang.reflect.Array;
+
+/**
+ * Application of rankings to arrays, split into index ranges that run in the common fork/join pool.
+ * Each index range writes to distinct elements of the result, which is safe for all array types.
+ *
+ * @see Parallel
+ */
+final class ParallelApply {
+
+  private ParallelApply() {
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @return the rearranged copy
+   */
+  static int[] apply(int[] ranking, int[] input) {
+    int n = ranking.length;
+    int[] result = new int[input.length];
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @return the rearranged copy
+   */
+  static long[] apply(int[] ranking, long[] input) {
+    int n = ranking.length;
+    long[] result = new long[input.length];
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @return the rearranged copy
+   */
+  static double[] apply(int[] ranking, double[] input) {
+    int n = ranking.length;
+    double[] result = new double[input.length];
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @return the rearranged copy
+   */
+  static float[] apply(int[] ranking, float[] input) {
+    int n = ranking.length;
+    float[] result = new float[input.length];
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @return the rearranged copy
+   */
+  static short[] apply(int[] ranking, short[] input) {
+    int n = ranking.length;
+    short[] result = new short[input.length];
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @return the rearranged copy
+   */
+  static char[] apply(int[] ranking, char[] input) {
+    int n = ranking.length;
+    char[] result = new char[input.length];
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @return the rearranged copy
+   */
+  static byte[] apply(int[] ranking, byte[] input) {
+    int n = ranking.length;
+    byte[] result = new byte[input.length];
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+
+  /**
+   * Apply a ranking to an array, writing the result to a new array, using multiple threads if the ranking is long.
+   *
+   * @param ranking a ranking
+   * @param input an array of length not less than {@code ranking.length}
+   * @param <T> element type
+   * @return the rearranged copy
+   */
+  static <T> T[] apply(int[] ranking, T[] input) {
+    int n = ranking.length;
+    @SuppressWarnings("unchecked")
+    T[] result = (T[]) Array.newInstance(input.getClass().getComponentType(), input.length);
+    System.arraycopy(input, n, result, n, input.length - n);
+    Parallel.forRange(n, (from, to) -> {
+      for (int i = from; i < to; i++)
+        result[ranking[i]] = input[i];
+    });
+    return result;
+  }
+}
@@ -1,10 +1,20 @@
 package com.github.cyclophone;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.github.cyclophone.ArrayUtil.checkLength;
 
@@ -15,14 +25,20 @@ public final class Permutation implements Comparable<Permutation> {
 
   /*
    *  An array of N integers where each of the integers between 0 and N-1 appear exactly once.
+   *  The array is packed, see PackedRankings: It is a byte[] or short[] if N is small enough.
+   *  The only exception are permutations that were created by MutablePermutation.freeze(),
+   *  which may keep the unpacked int[] of the mutable permutation, to avoid copying it.
    *  This array is never modified, and no code outside of this class can have a reference to it.
    *  Because of this, Permutation instances are effectively immutable.
    */
-  private final int[] ranking;
+  private final Object ranking;
 
   /**
    * An efficient comparison for permutations,
    * which returns {@code 0} iff their rankings are equal.
+   * This is the lexicographic order of the rankings, which does not depend on their length:
+   * For each {@code n} that is not less than the length of both permutations,
+   * it is the same as the order of {@link #rank(int)}.
    *
    * @param other a permutation
    * @return comparison result
@@ -32,40 +48,86 @@ public final class Permutation implements Comparable<Permutation> {
     if (this == other) {
       return 0;
     }
-    if (ranking.length != other.ranking.length) {
-      return ranking.length - other.ranking.length;
-    }
-    for (int i = 0; i < ranking.length; i += 1) {
-      int diff = ranking[i] - other.ranking[i];
-      if (diff != 0) {
-        return diff;
-      }
-    }
-    return 0;
+    return PackedRankings.compare(ranking, other.ranking);
   }
 
-  private static final Permutation IDENTITY = new Permutation(new int[0], false);
+  private static final Permutation IDENTITY = new Permutation(new byte[0]);
+
+  private Permutation(Object ranking) {
+    this.ranking = ranking;
+  }
 
-  private Permutation(int[] ranking) {
-    this(ranking, false);
+  static Permutation define0(int... ranking) {
+    Rankings.checkRanking(ranking);
+    return copyOf(ranking);
   }
 
-  private Permutation(int[] ranking, boolean check) {
-    if (check) {
-      Rankings.checkRanking(ranking);
+  /**
+   * Create a permutation from a copy of a valid ranking.
+   *
+   * @param ranking a ranking, which may not be trimmed
+   * @return a permutation
+   */
+  private static Permutation copyOf(int[] ranking) {
+    int length = Rankings.trimmedLength(ranking);
+    if (length == 0) {
+      return IDENTITY;
     }
-    this.ranking = ranking;
+    Object packed = PackedRankings.pack(ranking, length);
+    if (packed == ranking) {
+      packed = Arrays.copyOf(ranking, length); // no outside references
+    }
+    return new Permutation(packed);
   }
 
-  static Permutation define0(int... ranking) {
-    int[] trimmed = Rankings.trim(ranking);
-    if (trimmed.length == 0) {
+  /**
+   * Create a permutation from a valid ranking that is not referenced anywhere else.
+   * The ranking is packed to the narrowest width, so it is only kept if it needs an {@code int[]}
+   * and cannot be trimmed.
+   *
+   * @param ranking a ranking, which may not be trimmed
+   * @return a permutation
+   */
+  static Permutation pack(int[] ranking) {
+    int length = Rankings.trimmedLength(ranking);
+    if (length == 0) {
+      return IDENTITY;
+    }
+    return new Permutation(PackedRankings.pack(ranking, length));
+  }
+
+  /**
+   * Create a permutation from a valid ranking without copying it, if possible.
+   * Unlike {@link #pack(int[])}, the result may keep an {@code int[]} ranking of any length.
+   * This is only used by {@link MutablePermutation#freeze()}.
+   * The caller must not modify the ranking after this method returns.
+   *
+   * @param ranking a ranking, which may not be trimmed
+   * @return a permutation
+   */
+  static Permutation wrap(int[] ranking) {
+    int length = Rankings.trimmedLength(ranking);
+    if (length == 0) {
       return IDENTITY;
     }
-    if (trimmed == ranking) {
-      trimmed = Arrays.copyOf(trimmed, trimmed.length); // no outside references
+    if (length < ranking.length) {
+      return new Permutation(PackedRankings.pack(ranking, length));
     }
-    return new Permutation(trimmed, true);
+    return new Permutation(ranking);
+  }
+
+  /**
+   * Create a permutation from a packed ranking that is not referenced anywhere else.
+   *
+   * @param packed a packed ranking, which may not be trimmed
+   * @return a permutation
+   */
+  private static Permutation ofPacked(Object packed) {
+    Object trimmed = PackedRankings.trim(packed);
+    if (PackedRankings.length(trimmed) == 0) {
+      return IDENTITY;
+    }
+    return new Permutation(trimmed);
   }
 
   public static Permutation define(int... ranking) {
@@ -149,7 +211,7 @@ public final class Permutation implements Comparable<Permutation> {
     if (other.isIdentity()) {
       return this;
     }
-    return define0(Rankings.comp(this.ranking, other.ranking));
+    return ofPacked(PackedRankings.comp(this.ranking, other.ranking));
   }
 
   /**
@@ -168,19 +230,48 @@ public final class Permutation implements Comparable<Permutation> {
    *
    * @param n any integer
    * @return the {@code n}th power of this permutation
+   * @see #pow(long)
    */
   public Permutation pow(int n) {
+    return pow((long) n);
+  }
+
+  /**
+   * Raise this permutation to the {@code n}th power.
+   * Each cycle is rotated by {@code n} modulo its length,
+   * so this runs in time proportional to {@code this.length()}, independent of {@code n}.
+   *
+   * @param n any number
+   * @return the {@code n}th power of this permutation
+   * @see #pow(int)
+   */
+  public Permutation pow(long n) {
     if (n == 0) {
       return IDENTITY;
     }
-    if (this.ranking.length == 0) {
+    if (n == 1 || isIdentity()) {
       return this;
     }
-    Permutation seed = n < 0 ? invert() : this;
-    Permutation result = seed;
-    for (int i = 1; i < Math.abs(n); i += 1)
-      result = result.compose(seed);
-    return result;
+    return pack(Rankings.pow(PackedRankings.ints(ranking), length -> (int) Math.floorMod(n, (long) length)));
+  }
+
+  /**
+   * Raise this permutation to the {@code n}th power.
+   * Each cycle is rotated by {@code n} modulo its length,
+   * so this runs in time proportional to {@code this.length()}, and the bit length of {@code n}.
+   *
+   * @param n any number
+   * @return the {@code n}th power of this permutation
+   * @see #pow(int)
+   */
+  public Permutation pow(BigInteger n) {
+    if (n.bitLength() < Long.SIZE) {
+      return pow(n.longValue());
+    }
+    if (isIdentity()) {
+      return this;
+    }
+    return pack(Rankings.pow(PackedRankings.ints(ranking), length -> n.mod(BigInteger.valueOf(length)).intValue()));
   }
 
   /**
@@ -194,10 +285,359 @@ public final class Permutation implements Comparable<Permutation> {
    * @see #isIdentity
    */
   public Permutation invert() {
-    if (this.ranking.length == 0) {
+    if (isIdentity()) {
       return this;
     }
-    return define0(Rankings.invert(ranking));
+    if (ranking instanceof int[]) {
+      // may be an unpacked ranking from MutablePermutation.freeze()
+      return pack(Rankings.invert((int[]) ranking));
+    }
+    return new Permutation(PackedRankings.invert(ranking));
+  }
+
+  /**
+   * Like {@link #compose(Permutation)}, but uses multiple threads if the result is long.
+   *
+   * @param other a permutation
+   * @return the product of this and {@code other}
+   * @see Parallel#THRESHOLD
+   */
+  public Permutation composeParallel(Permutation other) {
+    if (Math.max(length(), other.length()) < Parallel.THRESHOLD) {
+      return compose(other);
+    }
+    return pack(Rankings.compParallel(PackedRankings.ints(ranking), PackedRankings.ints(other.ranking)));
+  }
+
+  /**
+   * Like {@link #invert()}, but uses multiple threads if this permutation is long.
+   *
+   * @return the inverse of this permutation
+   * @see Parallel#THRESHOLD
+   */
+  public Permutation invertParallel() {
+    if (length() < Parallel.THRESHOLD) {
+      return invert();
+    }
+    return pack(Rankings.invertParallel(PackedRankings.ints(ranking)));
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public int[] applyParallel(int[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public long[] applyParallel(long[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public double[] applyParallel(double[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public float[] applyParallel(float[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public short[] applyParallel(short[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public char[] applyParallel(char[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public byte[] applyParallel(byte[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array, using multiple threads if this permutation is long.
+   * This method does not modify the input.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @param <T> element type
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public <T> T[] applyParallel(T[] input) {
+    checkLength(length(), input.length);
+    return ParallelApply.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange the rows of a row-major matrix in place. Afterwards, the row that was at index {@code i}
+   * is at {@code apply(i)}. A flattened tensor can be handled as a matrix whose rows are the slices
+   * along the first axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows, not less than {@code this.length()}
+   * @param cols the number of columns
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough rows
+   */
+  public void applyToRows(int[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), rows);
+    Matrices.applyToRows(PackedRankings.ints(ranking), data, cols);
+  }
+
+  /**
+   * Rearrange the columns of a row-major matrix in place. Afterwards, in each row, the element that was
+   * in column {@code j} is in column {@code apply(j)}. A flattened tensor can be handled as a matrix
+   * whose columns are the indexes along the last axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows
+   * @param cols the number of columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough columns
+   */
+  public void applyToColumns(int[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), cols);
+    Matrices.applyToColumns(PackedRankings.ints(ranking), data, rows, cols);
+  }
+
+  /**
+   * Rearrange the rows and the columns of a square row-major matrix in place, computing {@code P * A * P^T}, where {@code P} is the permutation matrix.
+   * Afterwards, the element that was at {@code (i, j)} is at {@code (apply(i), apply(j))}.
+   *
+   * @param data a row-major matrix of {@code size * size} elements
+   * @param size the number of rows and columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the size is negative or does not match the data,
+   * or if it is less than {@code this.length()}
+   */
+  public void applySymmetric(int[] data, int size) {
+    checkMatrix(data.length, size, size);
+    checkLength(length(), size);
+    int[] ints = PackedRankings.ints(ranking);
+    Matrices.applyToRows(ints, data, size);
+    Matrices.applyToColumns(ints, data, size, size);
+  }
+
+  /**
+   * Rearrange the rows of a row-major matrix in place. Afterwards, the row that was at index {@code i}
+   * is at {@code apply(i)}. A flattened tensor can be handled as a matrix whose rows are the slices
+   * along the first axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows, not less than {@code this.length()}
+   * @param cols the number of columns
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough rows
+   */
+  public void applyToRows(long[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), rows);
+    Matrices.applyToRows(PackedRankings.ints(ranking), data, cols);
+  }
+
+  /**
+   * Rearrange the columns of a row-major matrix in place. Afterwards, in each row, the element that was
+   * in column {@code j} is in column {@code apply(j)}. A flattened tensor can be handled as a matrix
+   * whose columns are the indexes along the last axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows
+   * @param cols the number of columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough columns
+   */
+  public void applyToColumns(long[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), cols);
+    Matrices.applyToColumns(PackedRankings.ints(ranking), data, rows, cols);
+  }
+
+  /**
+   * Rearrange the rows and the columns of a square row-major matrix in place, computing {@code P * A * P^T}, where {@code P} is the permutation matrix.
+   * Afterwards, the element that was at {@code (i, j)} is at {@code (apply(i), apply(j))}.
+   *
+   * @param data a row-major matrix of {@code size * size} elements
+   * @param size the number of rows and columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the size is negative or does not match the data,
+   * or if it is less than {@code this.length()}
+   */
+  public void applySymmetric(long[] data, int size) {
+    checkMatrix(data.length, size, size);
+    checkLength(length(), size);
+    int[] ints = PackedRankings.ints(ranking);
+    Matrices.applyToRows(ints, data, size);
+    Matrices.applyToColumns(ints, data, size, size);
+  }
+
+  /**
+   * Rearrange the rows of a row-major matrix in place. Afterwards, the row that was at index {@code i}
+   * is at {@code apply(i)}. A flattened tensor can be handled as a matrix whose rows are the slices
+   * along the first axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows, not less than {@code this.length()}
+   * @param cols the number of columns
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough rows
+   */
+  public void applyToRows(float[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), rows);
+    Matrices.applyToRows(PackedRankings.ints(ranking), data, cols);
+  }
+
+  /**
+   * Rearrange the columns of a row-major matrix in place. Afterwards, in each row, the element that was
+   * in column {@code j} is in column {@code apply(j)}. A flattened tensor can be handled as a matrix
+   * whose columns are the indexes along the last axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows
+   * @param cols the number of columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough columns
+   */
+  public void applyToColumns(float[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), cols);
+    Matrices.applyToColumns(PackedRankings.ints(ranking), data, rows, cols);
+  }
+
+  /**
+   * Rearrange the rows and the columns of a square row-major matrix in place, computing {@code P * A * P^T}, where {@code P} is the permutation matrix.
+   * Afterwards, the element that was at {@code (i, j)} is at {@code (apply(i), apply(j))}.
+   *
+   * @param data a row-major matrix of {@code size * size} elements
+   * @param size the number of rows and columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the size is negative or does not match the data,
+   * or if it is less than {@code this.length()}
+   */
+  public void applySymmetric(float[] data, int size) {
+    checkMatrix(data.length, size, size);
+    checkLength(length(), size);
+    int[] ints = PackedRankings.ints(ranking);
+    Matrices.applyToRows(ints, data, size);
+    Matrices.applyToColumns(ints, data, size, size);
+  }
+
+  /**
+   * Rearrange the rows of a row-major matrix in place. Afterwards, the row that was at index {@code i}
+   * is at {@code apply(i)}. A flattened tensor can be handled as a matrix whose rows are the slices
+   * along the first axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows, not less than {@code this.length()}
+   * @param cols the number of columns
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough rows
+   */
+  public void applyToRows(double[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), rows);
+    Matrices.applyToRows(PackedRankings.ints(ranking), data, cols);
+  }
+
+  /**
+   * Rearrange the columns of a row-major matrix in place. Afterwards, in each row, the element that was
+   * in column {@code j} is in column {@code apply(j)}. A flattened tensor can be handled as a matrix
+   * whose columns are the indexes along the last axis.
+   *
+   * @param data a row-major matrix of {@code rows * cols} elements
+   * @param rows the number of rows
+   * @param cols the number of columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the dimensions are negative or do not match the data,
+   * or if there are not enough columns
+   */
+  public void applyToColumns(double[] data, int rows, int cols) {
+    checkMatrix(data.length, rows, cols);
+    checkLength(length(), cols);
+    Matrices.applyToColumns(PackedRankings.ints(ranking), data, rows, cols);
+  }
+
+  /**
+   * Rearrange the rows and the columns of a square row-major matrix in place, computing {@code P * A * P^T}, where {@code P} is the permutation matrix.
+   * Afterwards, the element that was at {@code (i, j)} is at {@code (apply(i), apply(j))}.
+   *
+   * @param data a row-major matrix of {@code size * size} elements
+   * @param size the number of rows and columns, not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if the size is negative or does not match the data,
+   * or if it is less than {@code this.length()}
+   */
+  public void applySymmetric(double[] data, int size) {
+    checkMatrix(data.length, size, size);
+    checkLength(length(), size);
+    int[] ints = PackedRankings.ints(ranking);
+    Matrices.applyToRows(ints, data, size);
+    Matrices.applyToColumns(ints, data, size, size);
+  }
+
+  private static void checkMatrix(int length, int rows, int cols) {
+    if (rows < 0 || cols < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    if ((long) rows * cols != length) {
+      throw new IllegalArgumentException("expecting " + rows + " * " + cols + " elements, but length is " + length);
+    }
   }
 
   /**
@@ -207,18 +647,189 @@ public final class Permutation implements Comparable<Permutation> {
    *   this.pow(n).isIdentity();
    * </code></pre>
    *
+   * The order is the least common multiple of the cycle lengths.
+   *
    * @return the order of this permutation
-   * @exception java.lang.IllegalArgumentException if {@code pos < 0} or {@code pos >= this.length}
+   * @exception java.lang.ArithmeticException if the order is greater than {@code Integer.MAX_VALUE}
+   * @see #orderExact()
    * @see #isIdentity
    */
   public int order() {
-    int i = 1;
-    Permutation p = this;
-    while (p.ranking.length != 0) {
-      i += 1;
-      p = p.compose(this);
+    return orderExact().intValueExact();
+  }
+
+  /**
+   * Calculate the order of this permutation, which is the least common multiple of its cycle lengths.
+   * Unlike {@link #order()}, this method does not fail if the order is large.
+   *
+   * @return the order of this permutation
+   */
+  public BigInteger orderExact() {
+    int[] counts = CycleUtil.cycleCounts(PackedRankings.ints(ranking));
+    long lcm = 1;
+    BigInteger big = null;
+    for (int length = 2; length < counts.length; length++) {
+      if (counts[length] == 0) {
+        continue;
+      }
+      if (big == null) {
+        long gcd = gcd(lcm, length);
+        long factor = length / gcd;
+        if (lcm <= Long.MAX_VALUE / factor) {
+          lcm *= factor;
+          continue;
+        }
+        big = BigInteger.valueOf(lcm);
+      }
+      BigInteger b = BigInteger.valueOf(length);
+      big = big.multiply(b).divide(big.gcd(b));
+    }
+    return big == null ? BigInteger.valueOf(lcm) : big;
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      long t = a % b;
+      a = b;
+      b = t;
+    }
+    return a;
+  }
+
+  /**
+   * Check if the order of this permutation divides {@code k}, or in other words,
+   * if {@code this.pow(k)} is the identity.
+   * This checks if each cycle length divides {@code k}, without composing any permutations.
+   *
+   * @param k any number
+   * @return true if {@code this.pow(k).isIdentity()}
+   */
+  public boolean orderDivides(long k) {
+    int[] counts = CycleUtil.cycleCounts(PackedRankings.ints(ranking));
+    for (int length = 2; length < counts.length; length++) {
+      if (counts[length] != 0 && k % length != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the position of this permutation in the lexicographic order of all permutations of degree {@code n}.
+   * This is consistent with {@link #compareTo(Permutation)}.
+   *
+   * @param n a number not less than {@code length()} and not greater than {@code 20}
+   * @return a number between {@code 0} (inclusive) and {@code n!} (exclusive)
+   * @exception java.lang.IllegalArgumentException if {@code n} is out of range
+   * @see #unrank(int, long)
+   * @see #rankExact(int)
+   */
+  public long rank(int n) {
+    int[] ints = PackedRankings.ints(ranking);
+    Rankings.checkDegree(ints.length, n, Rankings.MAX_LONG_RANK_DEGREE);
+    return Rankings.lexRank(ints, n, new int[ints.length + 1], new int[ints.length]);
+  }
+
+  /**
+   * Get the position of this permutation in the lexicographic order of all permutations of degree {@code n}.
+   *
+   * @param n a number not less than {@code length()}
+   * @return a number between {@code 0} (inclusive) and {@code n!} (exclusive)
+   * @exception java.lang.IllegalArgumentException if {@code n < length()}
+   * @see #unrank(int, BigInteger)
+   */
+  public BigInteger rankExact(int n) {
+    int[] ints = PackedRankings.ints(ranking);
+    Rankings.checkDegree(ints.length, n, Integer.MAX_VALUE);
+    return Rankings.lexRankExact(ints, n);
+  }
+
+  /**
+   * Get the ranks of several permutations of degree {@code n}.
+   *
+   * @param n a number not less than the length of each permutation, and not greater than {@code 20}
+   * @param permutations some permutations
+   * @return an array of the same length as {@code permutations}, containing their ranks
+   * @exception java.lang.IllegalArgumentException if {@code n} is out of range
+   * @see #rank(int)
+   */
+  public static long[] rankAll(int n, Permutation... permutations) {
+    Rankings.checkDegree(0, n, Rankings.MAX_LONG_RANK_DEGREE);
+    int[] tree = new int[n + 1];
+    int[] digits = new int[n];
+    long[] result = new long[permutations.length];
+    for (int i = 0; i < permutations.length; i++) {
+      int[] ints = PackedRankings.ints(permutations[i].ranking);
+      Rankings.checkDegree(ints.length, n, n);
+      result[i] = Rankings.lexRank(ints, n, tree, digits);
+    }
+    return result;
+  }
+
+  /**
+   * Get the permutation of degree {@code n} that has the given lexicographic rank.
+   *
+   * @param n a number between {@code 0} and {@code 20}
+   * @param rank a number between {@code 0} (inclusive) and {@code n!} (exclusive)
+   * @return a permutation {@code p} such that {@code p.rank(n) == rank}
+   * @exception java.lang.IllegalArgumentException if {@code n} or {@code rank} is out of range
+   * @see #rank(int)
+   */
+  public static Permutation unrank(int n, long rank) {
+    checkUnrank(n, rank);
+    int[] dest = new int[n];
+    Rankings.lexUnrank(rank, dest, new int[n + 1]);
+    return pack(dest);
+  }
+
+  /**
+   * Get the permutation of degree {@code n} that has the given lexicographic rank.
+   *
+   * @param n a non-negative number
+   * @param rank a number between {@code 0} (inclusive) and {@code n!} (exclusive)
+   * @return a permutation {@code p} such that {@code p.rankExact(n).equals(rank)}
+   * @exception java.lang.IllegalArgumentException if {@code n} or {@code rank} is out of range
+   * @see #rankExact(int)
+   */
+  public static Permutation unrank(int n, BigInteger rank) {
+    if (n < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    if (rank.signum() < 0 || rank.compareTo(Rankings.factorial(n)) >= 0) {
+      throw new IllegalArgumentException("rank out of range: " + rank);
+    }
+    int[] dest = new int[n];
+    Rankings.lexUnrank(rank, dest);
+    return pack(dest);
+  }
+
+  /**
+   * Get the permutations of degree {@code n} that have the given lexicographic ranks.
+   *
+   * @param n a number between {@code 0} and {@code 20}
+   * @param ranks some numbers between {@code 0} (inclusive) and {@code n!} (exclusive)
+   * @return an array of the same length as {@code ranks}, containing the corresponding permutations
+   * @exception java.lang.IllegalArgumentException if {@code n} or one of the ranks is out of range
+   * @see #unrank(int, long)
+   */
+  public static Permutation[] unrankAll(int n, long... ranks) {
+    Rankings.checkDegree(0, n, Rankings.MAX_LONG_RANK_DEGREE);
+    int[] tree = new int[n + 1];
+    int[] dest = new int[n];
+    Permutation[] result = new Permutation[ranks.length];
+    for (int i = 0; i < ranks.length; i++) {
+      checkUnrank(n, ranks[i]);
+      Rankings.lexUnrank(ranks[i], dest, tree);
+      result[i] = copyOf(dest);
+    }
+    return result;
+  }
+
+  private static void checkUnrank(int n, long rank) {
+    Rankings.checkDegree(0, n, Rankings.MAX_LONG_RANK_DEGREE);
+    if (rank < 0 || rank >= Rankings.factorialLong(n)) {
+      throw new IllegalArgumentException("rank out of range: " + rank);
     }
-    return i;
   }
 
   /**
@@ -227,7 +838,7 @@ public final class Permutation implements Comparable<Permutation> {
    * @return a cycle based version of this operation
    */
   Cycles toCycles() {
-    if (ranking.length == 0) {
+    if (isIdentity()) {
       return Cycles.identity();
     }
     return Cycles.create(getCycles());
@@ -239,7 +850,18 @@ public final class Permutation implements Comparable<Permutation> {
    * @return true if this is the identity
    */
   boolean isIdentity() {
-    return ranking.length == 0;
+    return PackedRankings.length(ranking) == 0;
+  }
+
+  /**
+   * Get the packed ranking of this permutation.
+   * The result must not be modified.
+   *
+   * @return the packed ranking
+   * @see PackedRankings
+   */
+  Object packed() {
+    return ranking;
   }
 
   /**
@@ -249,7 +871,7 @@ public final class Permutation implements Comparable<Permutation> {
    * @return the length of this operation
    */
   int length() {
-    return ranking.length;
+    return PackedRankings.length(ranking);
   }
 
   /**
@@ -274,7 +896,7 @@ public final class Permutation implements Comparable<Permutation> {
    * @return a string
    */
   public String print(int length) {
-    return Arrays.stream(Rankings.fill(this.ranking, length))
+    return Arrays.stream(Rankings.fill(PackedRankings.ints(ranking), length))
         .map(i -> i + 1)
         .mapToObj(Integer::toString)
         .collect(Collectors.joining(""));
@@ -286,7 +908,9 @@ public final class Permutation implements Comparable<Permutation> {
    * @return a copy of the ranking
    */
   public int[] getRanking() {
-    return Arrays.copyOf(ranking, ranking.length);
+    int[] result = new int[length()];
+    PackedRankings.unpack(ranking, result);
+    return result;
   }
 
   /**
@@ -295,7 +919,7 @@ public final class Permutation implements Comparable<Permutation> {
    * @return a cycle based version of this operation
    */
   public int[][] getCycles() {
-    return CycleUtil.toOrbits(ranking);
+    return CycleUtil.toOrbits(PackedRankings.ints(ranking));
   }
 
   /**
@@ -307,12 +931,12 @@ public final class Permutation implements Comparable<Permutation> {
    * @exception java.lang.IllegalArgumentException if {@code input} has less than {@code this.length()} elements
    */
   public <E> List<E> apply(List<E> input) {
-    if (ranking.length == 0) {
+    if (isIdentity()) {
       return input;
     }
     int length = input.size();
-    checkLength(ranking.length, length);
-    return Rankings.apply(ranking, input);
+    checkLength(length(), length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
   }
 
   /**
@@ -321,6 +945,7 @@ public final class Permutation implements Comparable<Permutation> {
    * @param input at least {@code this.length()} ints
    * @return the result of applying this permutation to {@code input}
    * @exception java.lang.IllegalArgumentException if {@code input} has less than {@code this.length()} elements
+   * @see #applyInts(int[])
    */
   public List<Integer> apply(int... input) {
     List<Integer> list = Arrays.stream(input)
@@ -330,24 +955,988 @@ public final class Permutation implements Comparable<Permutation> {
   }
 
   /**
-   * Conjugation with {@code h}.
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
+   * Unlike {@link #apply(int...)}, this method does not box the elements.
    *
-   * @param h a permutation
-   * @return {@code h^-1 * this * h}
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
    */
-  public Permutation conjugationBy(Permutation h) {
-    return InnerAutomorphism.conjugationBy(h).apply(this);
+  public int[] applyInts(int[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
   }
 
   /**
-   * Return all possible permutations of given length.
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
    *
-   * @param n length of permutations to generate
-   * @return all possible permutations of length {@code n}. This stream contains {@code n!}
-   * different permutations.
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
    */
-  public static Stream<Permutation> symmetricGroup(int n) {
-    return Rankings.symmetricGroup(n).map(Permutation::new);
+  public long[] apply(long[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public double[] apply(double[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public float[] apply(float[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public short[] apply(short[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public char[] apply(char[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public byte[] apply(byte[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange an array. This method does not modify the input.
+   * Elements at indexes not less than {@code this.length()} are not moved.
+   *
+   * @param input an array of length not less than {@code this.length()}
+   * @return a new array, where the element that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length < this.length()}
+   */
+  public boolean[] apply(boolean[] input) {
+    checkLength(length(), input.length);
+    return Rankings.apply(PackedRankings.ints(ranking), input);
+  }
+
+  /**
+   * Rearrange the characters of a string. This method does not modify the input.
+   *
+   * @param input a sequence of at least {@code this.length()} characters
+   * @return a string, where the character that was at index {@code i} of the input is at {@code apply(i)}
+   * @exception java.lang.IllegalArgumentException if {@code input.length() < this.length()}
+   */
+  public String apply(CharSequence input) {
+    char[] chars;
+    if (input instanceof String) {
+      chars = ((String) input).toCharArray();
+    } else {
+      chars = new char[input.length()];
+      for (int i = 0; i < chars.length; i++)
+        chars[i] = input.charAt(i);
+    }
+    return new String(apply(chars));
+  }
+
+  /**
+   * Rearrange the remaining elements of a buffer. This method does not modify the input, or its position.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the result.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a new heap buffer, with position zero and capacity {@code input.remaining()}
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public IntBuffer apply(IntBuffer input) {
+    int[] array = new int[input.remaining()];
+    input.duplicate().get(array);
+    return IntBuffer.wrap(applyInts(array));
+  }
+
+  /**
+   * Rearrange the remaining elements of a buffer. This method does not modify the input, or its position.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the result.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a new heap buffer, with position zero and capacity {@code input.remaining()}
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public LongBuffer apply(LongBuffer input) {
+    long[] array = new long[input.remaining()];
+    input.duplicate().get(array);
+    return LongBuffer.wrap(apply(array));
+  }
+
+  /**
+   * Rearrange the remaining elements of a buffer. This method does not modify the input, or its position.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the result.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a new heap buffer, with position zero and capacity {@code input.remaining()}
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public DoubleBuffer apply(DoubleBuffer input) {
+    double[] array = new double[input.remaining()];
+    input.duplicate().get(array);
+    return DoubleBuffer.wrap(apply(array));
+  }
+
+  /**
+   * Rearrange the remaining elements of a buffer. This method does not modify the input, or its position.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the result.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a new heap buffer, with position zero and capacity {@code input.remaining()}
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public FloatBuffer apply(FloatBuffer input) {
+    float[] array = new float[input.remaining()];
+    input.duplicate().get(array);
+    return FloatBuffer.wrap(apply(array));
+  }
+
+  /**
+   * Rearrange the remaining elements of a buffer. This method does not modify the input, or its position.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the result.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a new heap buffer, with position zero and capacity {@code input.remaining()}
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public ShortBuffer apply(ShortBuffer input) {
+    short[] array = new short[input.remaining()];
+    input.duplicate().get(array);
+    return ShortBuffer.wrap(apply(array));
+  }
+
+  /**
+   * Rearrange the remaining elements of a buffer. This method does not modify the input, or its position.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the result.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a new heap buffer, with position zero and capacity {@code input.remaining()}
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public CharBuffer apply(CharBuffer input) {
+    char[] array = new char[input.remaining()];
+    input.duplicate().get(array);
+    return CharBuffer.wrap(apply(array));
+  }
+
+  /**
+   * Rearrange the remaining bytes of a buffer. This method does not modify the input, or its position.
+   * The byte at {@code input.position() + i} is at index {@code apply(i)} of the result.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining bytes
+   * @return a new heap buffer, with position zero, capacity {@code input.remaining()} and the byte order of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public ByteBuffer apply(ByteBuffer input) {
+    byte[] array = new byte[input.remaining()];
+    input.duplicate().get(array);
+    return ByteBuffer.wrap(apply(array)).order(input.order());
+  }
+
+  /**
+   * Create a lazy view of a list, rearranged by this permutation.
+   * The element at index {@code i} of the input is at index {@code apply(i)} of the view.
+   * Unlike {@link #apply(List)}, no elements are copied, and reading an element takes constant time
+   * if the input is {@link java.util.RandomAccess}. Other lists are copied once.
+   * If the input is itself a view, the result is a view of the same source through the product
+   * of this permutation and the permutation of the input.
+   *
+   * @param input a list that must have at least {@code this.length()} elements
+   * @param <E> the lists element type
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input} has less than {@code this.length()} elements
+   */
+  public <E> PermutedList<E> view(List<E> input) {
+    checkLength(length(), input.size());
+    return PermutedList.create(input, this);
+  }
+
+  /**
+   * Create a lazy view of the remaining elements of a buffer, rearranged by this permutation.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the view.
+   * The position and limit of the input are not changed.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public PermutedBuffers.OfInt view(IntBuffer input) {
+    return PermutedBuffers.OfInt.create(input, this);
+  }
+
+  /**
+   * View a view through this permutation. The result reads directly from the source of the input,
+   * through the product of this permutation and the permutation of the input.
+   *
+   * @param input a view
+   * @return a read-only view of the source of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.size() < this.length()}
+   */
+  public PermutedBuffers.OfInt view(PermutedBuffers.OfInt input) {
+    checkLength(length(), input.size());
+    return input.permute(this);
+  }
+
+  /**
+   * Create a lazy view of the remaining elements of a buffer, rearranged by this permutation.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the view.
+   * The position and limit of the input are not changed.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public PermutedBuffers.OfLong view(LongBuffer input) {
+    return PermutedBuffers.OfLong.create(input, this);
+  }
+
+  /**
+   * View a view through this permutation. The result reads directly from the source of the input,
+   * through the product of this permutation and the permutation of the input.
+   *
+   * @param input a view
+   * @return a read-only view of the source of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.size() < this.length()}
+   */
+  public PermutedBuffers.OfLong view(PermutedBuffers.OfLong input) {
+    checkLength(length(), input.size());
+    return input.permute(this);
+  }
+
+  /**
+   * Create a lazy view of the remaining elements of a buffer, rearranged by this permutation.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the view.
+   * The position and limit of the input are not changed.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public PermutedBuffers.OfDouble view(DoubleBuffer input) {
+    return PermutedBuffers.OfDouble.create(input, this);
+  }
+
+  /**
+   * View a view through this permutation. The result reads directly from the source of the input,
+   * through the product of this permutation and the permutation of the input.
+   *
+   * @param input a view
+   * @return a read-only view of the source of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.size() < this.length()}
+   */
+  public PermutedBuffers.OfDouble view(PermutedBuffers.OfDouble input) {
+    checkLength(length(), input.size());
+    return input.permute(this);
+  }
+
+  /**
+   * Create a lazy view of the remaining elements of a buffer, rearranged by this permutation.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the view.
+   * The position and limit of the input are not changed.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public PermutedBuffers.OfFloat view(FloatBuffer input) {
+    return PermutedBuffers.OfFloat.create(input, this);
+  }
+
+  /**
+   * View a view through this permutation. The result reads directly from the source of the input,
+   * through the product of this permutation and the permutation of the input.
+   *
+   * @param input a view
+   * @return a read-only view of the source of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.size() < this.length()}
+   */
+  public PermutedBuffers.OfFloat view(PermutedBuffers.OfFloat input) {
+    checkLength(length(), input.size());
+    return input.permute(this);
+  }
+
+  /**
+   * Create a lazy view of the remaining elements of a buffer, rearranged by this permutation.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the view.
+   * The position and limit of the input are not changed.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public PermutedBuffers.OfShort view(ShortBuffer input) {
+    return PermutedBuffers.OfShort.create(input, this);
+  }
+
+  /**
+   * View a view through this permutation. The result reads directly from the source of the input,
+   * through the product of this permutation and the permutation of the input.
+   *
+   * @param input a view
+   * @return a read-only view of the source of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.size() < this.length()}
+   */
+  public PermutedBuffers.OfShort view(PermutedBuffers.OfShort input) {
+    checkLength(length(), input.size());
+    return input.permute(this);
+  }
+
+  /**
+   * Create a lazy view of the remaining elements of a buffer, rearranged by this permutation.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the view.
+   * The position and limit of the input are not changed.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public PermutedBuffers.OfChar view(CharBuffer input) {
+    return PermutedBuffers.OfChar.create(input, this);
+  }
+
+  /**
+   * View a view through this permutation. The result reads directly from the source of the input,
+   * through the product of this permutation and the permutation of the input.
+   *
+   * @param input a view
+   * @return a read-only view of the source of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.size() < this.length()}
+   */
+  public PermutedBuffers.OfChar view(PermutedBuffers.OfChar input) {
+    checkLength(length(), input.size());
+    return input.permute(this);
+  }
+
+  /**
+   * Create a lazy view of the remaining elements of a buffer, rearranged by this permutation.
+   * The element at {@code input.position() + i} is at index {@code apply(i)} of the view.
+   * The position and limit of the input are not changed.
+   *
+   * @param input a buffer with at least {@code this.length()} remaining elements
+   * @return a read-only view of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.remaining() < this.length()}
+   */
+  public PermutedBuffers.OfByte view(ByteBuffer input) {
+    return PermutedBuffers.OfByte.create(input, this);
+  }
+
+  /**
+   * View a view through this permutation. The result reads directly from the source of the input,
+   * through the product of this permutation and the permutation of the input.
+   *
+   * @param input a view
+   * @return a read-only view of the source of the input
+   * @exception java.lang.IllegalArgumentException if {@code input.size() < this.length()}
+   */
+  public PermutedBuffers.OfByte view(PermutedBuffers.OfByte input) {
+    checkLength(length(), input.size());
+    return input.permute(this);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(int[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(int[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(int[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(int[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(int[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(int[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(int[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(long[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(long[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(long[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(long[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(long[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(long[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(long[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(double[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(double[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(double[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(double[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(double[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(double[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(double[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(float[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(float[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(float[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(float[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(float[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(float[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(float[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(short[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(short[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(short[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(short[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(short[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(short[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(short[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(char[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(char[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(char[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(char[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(char[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(char[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(char[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(byte[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(byte[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void applyInPlace(byte[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(byte[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(byte[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(byte[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public void unapplyInPlace(byte[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Rearrange an array in place. Afterwards, the element that was at index {@code i} is at {@code apply(i)},
+   * as if the array had been replaced by the result of {@link #apply(List)}.
+   * Each cycle is rotated with a single temporary variable.
+   * Visited indexes are tracked in a bitset; see {@link #applyInPlace(Object[], boolean)} for a constant memory version.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param <T> element type
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public <T> void applyInPlace(T[] array) {
+    applyInPlace(array, false);
+  }
+
+  /**
+   * Rearrange an array in place, optionally without allocating any memory that depends on the length.
+   * In constant memory mode, each cycle is rotated from its smallest index, which is found by walking the cycle.
+   * This takes {@code O(n log n)} steps on average, but is quadratic if there are very long cycles.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @param <T> element type
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public <T> void applyInPlace(T[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.apply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(Object[])}. This is the same as applying the inverse in place.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param <T> element type
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public <T> void unapplyInPlace(T[] array) {
+    unapplyInPlace(array, false);
+  }
+
+  /**
+   * Undo {@link #applyInPlace(Object[], boolean)}.
+   *
+   * @param array an array of length not less than {@code this.length()}
+   * @param constantMemory true to find the cycles by leader checks, false to use a bitset of visited indexes
+   * @param <T> element type
+   * @exception java.lang.IllegalArgumentException if {@code array.length < this.length()}
+   */
+  public <T> void unapplyInPlace(T[] array, boolean constantMemory) {
+    checkLength(length(), array.length);
+    InPlace.unapply(PackedRankings.ints(ranking), array, constantMemory);
+  }
+
+  /**
+   * Conjugation with {@code h}.
+   *
+   * @param h a permutation
+   * @return {@code h^-1 * this * h}
+   */
+  public Permutation conjugationBy(Permutation h) {
+    return InnerAutomorphism.conjugationBy(h).apply(this);
+  }
+
+  /**
+   * Return all possible permutations of given length, in ascending order.
+   * If {@code n <= 20}, the stream is sized, and splits evenly for parallel processing.
+   *
+   * @param n length of permutations to generate
+   * @return all possible permutations of length {@code n}. This stream contains {@code n!}
+   * different permutations.
+   * @exception java.lang.IllegalArgumentException if {@code n} is negative
+   */
+  public static Stream<Permutation> symmetricGroup(int n) {
+    if (n < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    return Rankings.symmetricGroup(n, Permutation::copyOf);
+  }
+
+  /**
+   * Return the permutations of length {@code n} whose {@link #rank(int) rank} is between
+   * {@code fromRank} (inclusive) and {@code toRank} (exclusive), in ascending order.
+   * This can be used to divide an enumeration of the symmetric group into shards,
+   * or to resume it at a given position.
+   *
+   * @param n a number between {@code 0} and {@code 20}
+   * @param fromRank first rank, inclusive
+   * @param toRank last rank, exclusive
+   * @return a stream of {@code toRank - fromRank} permutations
+   * @exception java.lang.IllegalArgumentException unless {@code 0 <= fromRank <= toRank <= n!}
+   */
+  public static Stream<Permutation> symmetricGroup(int n, long fromRank, long toRank) {
+    Rankings.checkDegree(0, n, Rankings.MAX_LONG_RANK_DEGREE);
+    if (fromRank < 0 || fromRank > toRank || toRank > Rankings.factorialLong(n)) {
+      throw new IllegalArgumentException("invalid rank range: " + fromRank + ", " + toRank);
+    }
+    return Rankings.symmetricGroup(n, fromRank, toRank, Permutation::copyOf);
+  }
+
+  /**
+   * Return all permutations of the given cycle type, which is a conjugacy class of the symmetric group.
+   * The cycle type is a partition of {@code n}: each part is the length of one cycle,
+   * and fixed points are included as parts of length {@code 1}. The order of the parts does not matter.
+   * The stream is generated directly, without visiting other permutations.
+   * If the size of the class fits in a {@code long}, the stream is sized and splits evenly for parallel processing.
+   *
+   * @param partition the cycle lengths
+   * @return all permutations of degree {@code n} with these cycle lengths
+   * @exception java.lang.IllegalArgumentException if a part is less than {@code 1}
+   * @see #cycleTypeCount(int...)
+   */
+  public static Stream<Permutation> ofCycleType(int... partition) {
+    int[][] type = cycleType(partition);
+    return StreamSupport.stream(new CycleTypeSpliterator<>(type[0], type[1], Permutation::copyOf), false);
+  }
+
+  /**
+   * Count the permutations of the given cycle type.
+   * This is {@code n! / (1^m1 * m1! * 2^m2 * m2! * ...)}, where {@code mk} is the number of parts equal to {@code k}.
+   *
+   * @param partition the cycle lengths, including fixed points
+   * @return the size of the conjugacy class
+   * @exception java.lang.IllegalArgumentException if a part is less than {@code 1}
+   * @see #ofCycleType(int...)
+   */
+  public static BigInteger cycleTypeCount(int... partition) {
+    int[][] type = cycleType(partition);
+    return CycleTypeSpliterator.classSize(type[0], type[1]);
+  }
+
+  /**
+   * Return all permutations of length {@code n} that do not have a fixed point,
+   * grouped by cycle type.
+   *
+   * @param n a non-negative number
+   * @return all derangements of degree {@code n}
+   * @exception java.lang.IllegalArgumentException if {@code n} is negative
+   */
+  public static Stream<Permutation> derangements(int n) {
+    if (n < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    List<int[]> partitions = new ArrayList<>();
+    partitions(n, n, new int[n], 0, partitions);
+    return partitions.stream().flatMap(Permutation::ofCycleType);
+  }
+
+  /**
+   * Return all permutations of length {@code n} that are equal to their inverse,
+   * grouped by the number of transpositions.
+   *
+   * @param n a non-negative number
+   * @return all involutions of degree {@code n}, including the identity
+   * @exception java.lang.IllegalArgumentException if {@code n} is negative
+   */
+  public static Stream<Permutation> involutions(int n) {
+    if (n < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    return IntStream.rangeClosed(0, n / 2).boxed().flatMap(pairs -> {
+      int[] partition = new int[n - pairs];
+      Arrays.fill(partition, 0, pairs, 2);
+      Arrays.fill(partition, pairs, partition.length, 1);
+      return ofCycleType(partition);
+    });
+  }
+
+  // collect the partitions of n into parts between 2 and max, in descending order
+  private static void partitions(int n, int max, int[] parts, int size, List<int[]> result) {
+    if (n == 0) {
+      result.add(Arrays.copyOf(parts, size));
+      return;
+    }
+    for (int part = Math.min(n, max); part >= 2; part--) {
+      parts[size] = part;
+      partitions(n - part, part, parts, size + 1, result);
+    }
+  }
+
+  // the distinct parts in ascending order, and their multiplicities
+  private static int[][] cycleType(int[] partition) {
+    int[] sorted = partition.clone();
+    Arrays.sort(sorted);
+    if (sorted.length != 0 && sorted[0] < 1) {
+      throw new IllegalArgumentException("cycle length must be positive: " + sorted[0]);
+    }
+    int distinct = 0;
+    for (int i = 0; i < sorted.length; i++)
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        distinct++;
+      }
+    int[] lengths = new int[distinct];
+    int[] multiplicities = new int[distinct];
+    int j = -1;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        lengths[++j] = sorted[i];
+      }
+      multiplicities[j]++;
+    }
+    return new int[][]{lengths, multiplicities};
+  }
+
+  /**
+   * Visit all rankings of length {@code n}, without creating any {@link Permutation} objects.
+   * The rankings are generated by Heap's algorithm, so each one differs from the previous one
+   * by a single transposition, which is passed to the visitor.
+   * The order is not lexicographic.
+   *
+   * @param n a non-negative number
+   * @param visitor a callback, which is invoked {@code n!} times
+   * @exception java.lang.IllegalArgumentException if {@code n} is negative
+   */
+  public static void forEachPermutation(int n, RankingVisitor visitor) {
+    if (n < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    Rankings.forEachPermutation(n, visitor);
   }
 
 
@@ -359,11 +1948,11 @@ public final class Permutation implements Comparable<Permutation> {
     if (o == null || getClass() != o.getClass()) {
       return false;
     }
-    return Arrays.equals(ranking, ((Permutation) o).ranking);
+    return PackedRankings.equals(ranking, ((Permutation) o).ranking);
   }
 
   @Override
   public int hashCode() {
-    return Arrays.hashCode(ranking);
+    return PackedRankings.hashCode(ranking);
   }
 }
@@ -0,0 +1,430 @@
+package com.github.cyclophone;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>A growable sequence of permutations of a fixed degree, stored back to back outside of the java heap.</p>
+ *
+ * <p>Each permutation occupies one slot of {@code degree} elements in a {@link ByteBuffer}.
+ * Like {@link PackedRankings}, the element width is one byte if the degree is at most {@code 256},
+ * two bytes if it is at most {@code 65536}, and four bytes otherwise.
+ * The methods of this class address permutations by their index in the arena,
+ * and do not create {@link Permutation} objects unless {@link #get(int)} is called.</p>
+ *
+ * <p>A direct arena uses the native byte order. A mapped arena always uses little-endian byte order,
+ * so that the file can be read on any platform.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class PermutationArena {
+
+  private final int degree;
+  private final int width;
+  private final int slotSize;
+
+  private ByteBuffer buffer;
+  private final boolean mapped;
+  private int size;
+
+  private PermutationArena(int degree, ByteBuffer buffer, boolean mapped, int size) {
+    this.degree = degree;
+    this.width = width(degree);
+    this.slotSize = degree * width;
+    this.buffer = buffer.order(mapped ? ByteOrder.LITTLE_ENDIAN : ByteOrder.nativeOrder());
+    this.mapped = mapped;
+    this.size = size;
+  }
+
+  /**
+   * Create an empty arena in a direct buffer. The arena grows as needed.
+   *
+   * @param degree the length of the rankings in this arena
+   * @param initialCapacity the number of permutations that can be added before the buffer has to grow
+   * @return an empty arena
+   * @exception java.lang.IllegalArgumentException if {@code degree} or {@code initialCapacity} is negative
+   */
+  public static PermutationArena allocateDirect(int degree, int initialCapacity) {
+    if (degree < 0 || initialCapacity < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    return new PermutationArena(degree, ByteBuffer.allocateDirect(Math.multiplyExact(slotSize(degree), initialCapacity)), false, 0);
+  }
+
+  /**
+   * Create an empty arena that is backed by a memory-mapped region of a file.
+   * A mapped arena cannot grow beyond its capacity.
+   * The file must have been opened for reading and writing.
+   *
+   * @param channel a file channel
+   * @param position the offset of the mapped region in the file
+   * @param degree the length of the rankings in this arena
+   * @param capacity the maximum number of permutations in this arena
+   * @return an empty arena
+   * @throws IOException if the file cannot be mapped
+   * @exception java.lang.IllegalArgumentException if {@code degree} or {@code capacity} is negative,
+   * or if the mapped region is larger than {@code Integer.MAX_VALUE} bytes
+   */
+  public static PermutationArena map(FileChannel channel, long position, int degree, int capacity) throws IOException {
+    return map(channel, position, degree, capacity, 0);
+  }
+
+  /**
+   * Create an arena that is backed by a memory-mapped region of a file,
+   * which already contains {@code size} permutations.
+   * The stored rankings are not checked for validity.
+   * A mapped arena cannot grow beyond its capacity.
+   * The file must have been opened for reading and writing.
+   *
+   * @param channel a file channel
+   * @param position the offset of the mapped region in the file
+   * @param degree the length of the rankings in this arena
+   * @param capacity the maximum number of permutations in this arena
+   * @param size the number of permutations that are already stored in the mapped region
+   * @return an arena of the given size
+   * @throws IOException if the file cannot be mapped
+   * @exception java.lang.IllegalArgumentException if {@code degree}, {@code capacity} or {@code size} is negative,
+   * if {@code size} is greater than {@code capacity},
+   * or if the mapped region is larger than {@code Integer.MAX_VALUE} bytes
+   */
+  public static PermutationArena map(FileChannel channel, long position, int degree, int capacity, int size) throws IOException {
+    if (degree < 0 || capacity < 0 || size < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    if (size > capacity) {
+      throw new IllegalArgumentException("size " + size + " exceeds capacity " + capacity);
+    }
+    long bytes = (long) slotSize(degree) * capacity;
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("mapped region too large: " + bytes);
+    }
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+    return new PermutationArena(degree, buffer, true, size);
+  }
+
+  private static int width(int degree) {
+    return degree <= 1 << 8 ? 1 : degree <= 1 << 16 ? 2 : 4;
+  }
+
+  private static int slotSize(int degree) {
+    return degree * width(degree);
+  }
+
+  /**
+   * Get the length of the rankings in this arena.
+   *
+   * @return the degree
+   */
+  public int degree() {
+    return degree;
+  }
+
+  /**
+   * Get the number of permutations in this arena.
+   *
+   * @return the number of permutations
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Remove all permutations. The storage is retained.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  private int read(int slot, int i) {
+    int offset = slot * slotSize + i * width;
+    switch (width) {
+      case 1:
+        return buffer.get(offset) & 0xff;
+      case 2:
+        return buffer.getShort(offset) & 0xffff;
+      default:
+        return buffer.getInt(offset);
+    }
+  }
+
+  private void write(int slot, int i, int value) {
+    int offset = slot * slotSize + i * width;
+    switch (width) {
+      case 1:
+        buffer.put(offset, (byte) value);
+        break;
+      case 2:
+        buffer.putShort(offset, (short) value);
+        break;
+      default:
+        buffer.putInt(offset, value);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+    }
+  }
+
+  private void checkDest(int dest) {
+    if (dest < 0 || dest > size) {
+      throw new IndexOutOfBoundsException("dest: " + dest + ", size: " + size);
+    }
+    if (dest == size) {
+      ensureCapacity(size + 1);
+      size++;
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    long required = (long) capacity * slotSize;
+    if (required <= buffer.capacity()) {
+      return;
+    }
+    if (mapped || required > Integer.MAX_VALUE) {
+      throw new IllegalStateException("arena is full: " + size);
+    }
+    int newCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+    ByteBuffer grown = ByteBuffer.allocateDirect(newCapacity).order(buffer.order());
+    ByteBuffer old = buffer.duplicate();
+    old.position(0).limit(size * slotSize);
+    grown.put(old);
+    buffer = grown;
+  }
+
+  /**
+   * Append a permutation.
+   *
+   * @param p a permutation that does not move any index greater than or equal to the degree
+   * @return the index of the new permutation
+   * @exception java.lang.IllegalArgumentException if {@code p} is too long
+   * @exception java.lang.IllegalStateException if this arena is mapped and full
+   */
+  public int add(Permutation p) {
+    if (p.length() > degree) {
+      throw new IllegalArgumentException("permutation too long: " + p.length());
+    }
+    int[] ranking = Rankings.fill(p.getRanking(), degree);
+    return add(ranking);
+  }
+
+  /**
+   * Append a ranking. The input is not checked for validity.
+   *
+   * @param ranking a ranking of length {@code degree()}
+   * @return the index of the new permutation
+   * @exception java.lang.IllegalArgumentException if the length of {@code ranking} is not equal to the degree
+   * @exception java.lang.IllegalStateException if this arena is mapped and full
+   */
+  public int add(int[] ranking) {
+    if (ranking.length != degree) {
+      ArrayUtil.lengthFailure();
+    }
+    ensureCapacity(size + 1);
+    int slot = size++;
+    for (int i = 0; i < degree; i++)
+      write(slot, i, ranking[i]);
+    return slot;
+  }
+
+  /**
+   * Append the identity permutation.
+   *
+   * @return the index of the new permutation
+   * @exception java.lang.IllegalStateException if this arena is mapped and full
+   */
+  public int addIdentity() {
+    ensureCapacity(size + 1);
+    int slot = size++;
+    for (int i = 0; i < degree; i++)
+      write(slot, i, i);
+    return slot;
+  }
+
+  /**
+   * Create a permutation from the ranking at the given index.
+   *
+   * @param index an index less than {@code size()}
+   * @return the permutation at {@code index}
+   * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+   */
+  public Permutation get(int index) {
+    int[] ranking = new int[degree];
+    copyInto(index, ranking);
+    return Permutation.define0(ranking);
+  }
+
+  /**
+   * Copy the ranking at the given index into an array.
+   *
+   * @param index an index less than {@code size()}
+   * @param dest an array of length not less than {@code degree()}
+   * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+   */
+  public void copyInto(int index, int[] dest) {
+    checkIndex(index);
+    ArrayUtil.checkLength(degree, dest.length);
+    for (int i = 0; i < degree; i++)
+      dest[i] = read(index, i);
+  }
+
+  /**
+   * Move an index by the permutation at the given index.
+   *
+   * @param index an index less than {@code size()}
+   * @param i a non-negative number
+   * @return the image of {@code i}
+   * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+   */
+  public int apply(int index, int i) {
+    checkIndex(index);
+    if (i < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    return i < degree ? read(index, i) : i;
+  }
+
+  /**
+   * Store the product of two permutations of this arena.
+   * The destination may be equal to {@code size()}, in which case the result is appended.
+   *
+   * @param i the index of the left factor
+   * @param j the index of the right factor
+   * @param dest the index where the product is stored; must not be equal to {@code i} or {@code j}
+   * @exception java.lang.IndexOutOfBoundsException if an index is out of bounds
+   * @exception java.lang.IllegalArgumentException if {@code dest} is equal to {@code i} or {@code j}
+   * @see Permutation#compose(Permutation)
+   */
+  public void compose(int i, int j, int dest) {
+    checkIndex(i);
+    checkIndex(j);
+    if (dest == i || dest == j) {
+      throw new IllegalArgumentException("dest must not be one of the factors");
+    }
+    checkDest(dest);
+    for (int k = 0; k < degree; k++)
+      write(dest, k, read(i, read(j, k)));
+  }
+
+  /**
+   * Store the inverse of a permutation of this arena.
+   * The destination may be equal to {@code size()}, in which case the result is appended.
+   *
+   * @param i the index of a permutation
+   * @param dest the index where the inverse is stored; must not be equal to {@code i}
+   * @exception java.lang.IndexOutOfBoundsException if an index is out of bounds
+   * @exception java.lang.IllegalArgumentException if {@code dest == i}
+   */
+  public void invert(int i, int dest) {
+    checkIndex(i);
+    if (dest == i) {
+      throw new IllegalArgumentException("dest must not be the argument");
+    }
+    checkDest(dest);
+    for (int k = 0; k < degree; k++)
+      write(dest, read(i, k), k);
+  }
+
+  /**
+   * Compare two permutations of this arena lexicographically.
+   *
+   * @param i an index less than {@code size()}
+   * @param j an index less than {@code size()}
+   * @return comparison result
+   */
+  public int compare(int i, int j) {
+    checkIndex(i);
+    checkIndex(j);
+    return compareSlots(i, j);
+  }
+
+  private int compareSlots(int i, int j) {
+    if (i == j) {
+      return 0;
+    }
+    for (int k = 0; k < degree; k++) {
+      int diff = read(i, k) - read(j, k);
+      if (diff != 0) {
+        return diff;
+      }
+    }
+    return 0;
+  }
+
+  private void swapSlots(int i, int j) {
+    int a = i * slotSize;
+    int b = j * slotSize;
+    int k = 0;
+    for (; k + 8 <= slotSize; k += 8) {
+      long tmp = buffer.getLong(a + k);
+      buffer.putLong(a + k, buffer.getLong(b + k));
+      buffer.putLong(b + k, tmp);
+    }
+    for (; k < slotSize; k++) {
+      byte tmp = buffer.get(a + k);
+      buffer.put(a + k, buffer.get(b + k));
+      buffer.put(b + k, tmp);
+    }
+  }
+
+  /**
+   * Sort the permutations of this arena lexicographically, in place.
+   * This uses heapsort, so that no auxiliary storage is needed.
+   */
+  public void sort() {
+    for (int i = size / 2 - 1; i >= 0; i--)
+      siftDown(i, size);
+    for (int end = size - 1; end > 0; end--) {
+      swapSlots(0, end);
+      siftDown(0, end);
+    }
+  }
+
+  private void siftDown(int root, int end) {
+    while (true) {
+      int child = 2 * root + 1;
+      if (child >= end) {
+        return;
+      }
+      if (child + 1 < end && compareSlots(child, child + 1) < 0) {
+        child++;
+      }
+      if (compareSlots(root, child) >= 0) {
+        return;
+      }
+      swapSlots(root, child);
+      root = child;
+    }
+  }
+
+  /**
+   * Remove adjacent duplicates. If the arena is sorted, all duplicates are removed.
+   *
+   * @return the new size of this arena
+   * @see #sort()
+   */
+  public int dedup() {
+    if (size < 2) {
+      return size;
+    }
+    int last = 0;
+    for (int i = 1; i < size; i++) {
+      if (compareSlots(last, i) != 0) {
+        last++;
+        if (last != i) {
+          ByteBuffer src = buffer.duplicate();
+          src.position(i * slotSize).limit((i + 1) * slotSize);
+          ByteBuffer dst = buffer.duplicate();
+          dst.position(last * slotSize);
+          dst.put(src);
+        }
+      }
+    }
+    size = last + 1;
+    return size;
+  }
+}
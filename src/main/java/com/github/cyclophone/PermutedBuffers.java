@@ -0,0 +1,531 @@
+package com.github.cyclophone;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+import static com.github.cyclophone.ArrayUtil.checkLength;
+
+/**
+ * <p>Read-only views of nio buffers, rearranged by a permutation.
+ * The element at {@code position() + i} of the source buffer is at index {@code permutation().apply(i)} of the view.</p>
+ *
+ * <p>Reads go through the inverse ranking to the source buffer, so no elements are copied,
+ * and changes to the content of the source are visible in the view.
+ * Viewing a view through another permutation does not stack indirections;
+ * the result is a view of the original source, through the product of both permutations.</p>
+ *
+ * @see Permutation#view(java.nio.IntBuffer)
+ */
+public final class PermutedBuffers {
+
+  private PermutedBuffers() {
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+    }
+  }
+
+  /**
+   * A read-only view of the remaining elements of {@link IntBuffer}, rearranged by a permutation.
+   */
+  public static final class OfInt {
+
+    private final IntBuffer source;
+    private final int offset;
+    private final int size;
+    private final Permutation permutation;
+    private final int[] inverse;
+
+    OfInt(IntBuffer source, int offset, int size, Permutation permutation) {
+      this.source = source;
+      this.offset = offset;
+      this.size = size;
+      this.permutation = permutation;
+      this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+    }
+
+    static OfInt create(IntBuffer input, Permutation p) {
+      checkLength(p.length(), input.remaining());
+      return new OfInt(input.duplicate(), input.position(), input.remaining(), p);
+    }
+
+    OfInt permute(Permutation p) {
+      return new OfInt(source, offset, size, p.compose(permutation));
+    }
+
+    /**
+     * Get the permutation of this view, relative to the source buffer.
+     *
+     * @return the permutation
+     */
+    public Permutation permutation() {
+      return permutation;
+    }
+
+    /**
+     * Get the number of elements in this view.
+     *
+     * @return the number of remaining elements of the source buffer, at the time this view was created
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Read an element of this view.
+     *
+     * @param index an index less than {@code size()}
+     * @return the element of the source buffer that was moved to {@code index}
+     * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public int get(int index) {
+      checkIndex(index, size);
+      return source.get(offset + (index < inverse.length ? inverse[index] : index));
+    }
+
+    /**
+     * Copy the elements of this view into a new buffer.
+     *
+     * @return a new heap buffer with position zero and capacity {@code size()}
+     */
+    public IntBuffer materialize() {
+      int[] array = new int[size];
+      for (int i = 0; i < size; i++)
+        array[i] = get(i);
+      return IntBuffer.wrap(array);
+    }
+  }
+
+  /**
+   * A read-only view of the remaining elements of {@link LongBuffer}, rearranged by a permutation.
+   */
+  public static final class OfLong {
+
+    private final LongBuffer source;
+    private final int offset;
+    private final int size;
+    private final Permutation permutation;
+    private final int[] inverse;
+
+    OfLong(LongBuffer source, int offset, int size, Permutation permutation) {
+      this.source = source;
+      this.offset = offset;
+      this.size = size;
+      this.permutation = permutation;
+      this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+    }
+
+    static OfLong create(LongBuffer input, Permutation p) {
+      checkLength(p.length(), input.remaining());
+      return new OfLong(input.duplicate(), input.position(), input.remaining(), p);
+    }
+
+    OfLong permute(Permutation p) {
+      return new OfLong(source, offset, size, p.compose(permutation));
+    }
+
+    /**
+     * Get the permutation of this view, relative to the source buffer.
+     *
+     * @return the permutation
+     */
+    public Permutation permutation() {
+      return permutation;
+    }
+
+    /**
+     * Get the number of elements in this view.
+     *
+     * @return the number of remaining elements of the source buffer, at the time this view was created
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Read an element of this view.
+     *
+     * @param index an index less than {@code size()}
+     * @return the element of the source buffer that was moved to {@code index}
+     * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public long get(int index) {
+      checkIndex(index, size);
+      return source.get(offset + (index < inverse.length ? inverse[index] : index));
+    }
+
+    /**
+     * Copy the elements of this view into a new buffer.
+     *
+     * @return a new heap buffer with position zero and capacity {@code size()}
+     */
+    public LongBuffer materialize() {
+      long[] array = new long[size];
+      for (int i = 0; i < size; i++)
+        array[i] = get(i);
+      return LongBuffer.wrap(array);
+    }
+  }
+
+  /**
+   * A read-only view of the remaining elements of {@link DoubleBuffer}, rearranged by a permutation.
+   */
+  public static final class OfDouble {
+
+    private final DoubleBuffer source;
+    private final int offset;
+    private final int size;
+    private final Permutation permutation;
+    private final int[] inverse;
+
+    OfDouble(DoubleBuffer source, int offset, int size, Permutation permutation) {
+      this.source = source;
+      this.offset = offset;
+      this.size = size;
+      this.permutation = permutation;
+      this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+    }
+
+    static OfDouble create(DoubleBuffer input, Permutation p) {
+      checkLength(p.length(), input.remaining());
+      return new OfDouble(input.duplicate(), input.position(), input.remaining(), p);
+    }
+
+    OfDouble permute(Permutation p) {
+      return new OfDouble(source, offset, size, p.compose(permutation));
+    }
+
+    /**
+     * Get the permutation of this view, relative to the source buffer.
+     *
+     * @return the permutation
+     */
+    public Permutation permutation() {
+      return permutation;
+    }
+
+    /**
+     * Get the number of elements in this view.
+     *
+     * @return the number of remaining elements of the source buffer, at the time this view was created
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Read an element of this view.
+     *
+     * @param index an index less than {@code size()}
+     * @return the element of the source buffer that was moved to {@code index}
+     * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public double get(int index) {
+      checkIndex(index, size);
+      return source.get(offset + (index < inverse.length ? inverse[index] : index));
+    }
+
+    /**
+     * Copy the elements of this view into a new buffer.
+     *
+     * @return a new heap buffer with position zero and capacity {@code size()}
+     */
+    public DoubleBuffer materialize() {
+      double[] array = new double[size];
+      for (int i = 0; i < size; i++)
+        array[i] = get(i);
+      return DoubleBuffer.wrap(array);
+    }
+  }
+
+  /**
+   * A read-only view of the remaining elements of {@link FloatBuffer}, rearranged by a permutation.
+   */
+  public static final class OfFloat {
+
+    private final FloatBuffer source;
+    private final int offset;
+    private final int size;
+    private final Permutation permutation;
+    private final int[] inverse;
+
+    OfFloat(FloatBuffer source, int offset, int size, Permutation permutation) {
+      this.source = source;
+      this.offset = offset;
+      this.size = size;
+      this.permutation = permutation;
+      this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+    }
+
+    static OfFloat create(FloatBuffer input, Permutation p) {
+      checkLength(p.length(), input.remaining());
+      return new OfFloat(input.duplicate(), input.position(), input.remaining(), p);
+    }
+
+    OfFloat permute(Permutation p) {
+      return new OfFloat(source, offset, size, p.compose(permutation));
+    }
+
+    /**
+     * Get the permutation of this view, relative to the source buffer.
+     *
+     * @return the permutation
+     */
+    public Permutation permutation() {
+      return permutation;
+    }
+
+    /**
+     * Get the number of elements in this view.
+     *
+     * @return the number of remaining elements of the source buffer, at the time this view was created
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Read an element of this view.
+     *
+     * @param index an index less than {@code size()}
+     * @return the element of the source buffer that was moved to {@code index}
+     * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public float get(int index) {
+      checkIndex(index, size);
+      return source.get(offset + (index < inverse.length ? inverse[index] : index));
+    }
+
+    /**
+     * Copy the elements of this view into a new buffer.
+     *
+     * @return a new heap buffer with position zero and capacity {@code size()}
+     */
+    public FloatBuffer materialize() {
+      float[] array = new float[size];
+      for (int i = 0; i < size; i++)
+        array[i] = get(i);
+      return FloatBuffer.wrap(array);
+    }
+  }
+
+  /**
+   * A read-only view of the remaining elements of {@link ShortBuffer}, rearranged by a permutation.
+   */
+  public static final class OfShort {
+
+    private final ShortBuffer source;
+    private final int offset;
+    private final int size;
+    private final Permutation permutation;
+    private final int[] inverse;
+
+    OfShort(ShortBuffer source, int offset, int size, Permutation permutation) {
+      this.source = source;
+      this.offset = offset;
+      this.size = size;
+      this.permutation = permutation;
+      this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+    }
+
+    static OfShort create(ShortBuffer input, Permutation p) {
+      checkLength(p.length(), input.remaining());
+      return new OfShort(input.duplicate(), input.position(), input.remaining(), p);
+    }
+
+    OfShort permute(Permutation p) {
+      return new OfShort(source, offset, size, p.compose(permutation));
+    }
+
+    /**
+     * Get the permutation of this view, relative to the source buffer.
+     *
+     * @return the permutation
+     */
+    public Permutation permutation() {
+      return permutation;
+    }
+
+    /**
+     * Get the number of elements in this view.
+     *
+     * @return the number of remaining elements of the source buffer, at the time this view was created
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Read an element of this view.
+     *
+     * @param index an index less than {@code size()}
+     * @return the element of the source buffer that was moved to {@code index}
+     * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public short get(int index) {
+      checkIndex(index, size);
+      return source.get(offset + (index < inverse.length ? inverse[index] : index));
+    }
+
+    /**
+     * Copy the elements of this view into a new buffer.
+     *
+     * @return a new heap buffer with position zero and capacity {@code size()}
+     */
+    public ShortBuffer materialize() {
+      short[] array = new short[size];
+      for (int i = 0; i < size; i++)
+        array[i] = get(i);
+      return ShortBuffer.wrap(array);
+    }
+  }
+
+  /**
+   * A read-only view of the remaining elements of {@link CharBuffer}, rearranged by a permutation.
+   */
+  public static final class OfChar {
+
+    private final CharBuffer source;
+    private final int offset;
+    private final int size;
+    private final Permutation permutation;
+    private final int[] inverse;
+
+    OfChar(CharBuffer source, int offset, int size, Permutation permutation) {
+      this.source = source;
+      this.offset = offset;
+      this.size = size;
+      this.permutation = permutation;
+      this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+    }
+
+    static OfChar create(CharBuffer input, Permutation p) {
+      checkLength(p.length(), input.remaining());
+      return new OfChar(input.duplicate(), input.position(), input.remaining(), p);
+    }
+
+    OfChar permute(Permutation p) {
+      return new OfChar(source, offset, size, p.compose(permutation));
+    }
+
+    /**
+     * Get the permutation of this view, relative to the source buffer.
+     *
+     * @return the permutation
+     */
+    public Permutation permutation() {
+      return permutation;
+    }
+
+    /**
+     * Get the number of elements in this view.
+     *
+     * @return the number of remaining elements of the source buffer, at the time this view was created
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Read an element of this view.
+     *
+     * @param index an index less than {@code size()}
+     * @return the element of the source buffer that was moved to {@code index}
+     * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public char get(int index) {
+      checkIndex(index, size);
+      return source.get(offset + (index < inverse.length ? inverse[index] : index));
+    }
+
+    /**
+     * Copy the elements of this view into a new buffer.
+     *
+     * @return a new heap buffer with position zero and capacity {@code size()}
+     */
+    public CharBuffer materialize() {
+      char[] array = new char[size];
+      for (int i = 0; i < size; i++)
+        array[i] = get(i);
+      return CharBuffer.wrap(array);
+    }
+  }
+
+  /**
+   * A read-only view of the remaining elements of {@link ByteBuffer}, rearranged by a permutation.
+   */
+  public static final class OfByte {
+
+    private final ByteBuffer source;
+    private final int offset;
+    private final int size;
+    private final Permutation permutation;
+    private final int[] inverse;
+
+    OfByte(ByteBuffer source, int offset, int size, Permutation permutation) {
+      this.source = source;
+      this.offset = offset;
+      this.size = size;
+      this.permutation = permutation;
+      this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+    }
+
+    static OfByte create(ByteBuffer input, Permutation p) {
+      checkLength(p.length(), input.remaining());
+      return new OfByte(input.duplicate().order(input.order()), input.position(), input.remaining(), p);
+    }
+
+    OfByte permute(Permutation p) {
+      return new OfByte(source, offset, size, p.compose(permutation));
+    }
+
+    /**
+     * Get the permutation of this view, relative to the source buffer.
+     *
+     * @return the permutation
+     */
+    public Permutation permutation() {
+      return permutation;
+    }
+
+    /**
+     * Get the number of elements in this view.
+     *
+     * @return the number of remaining elements of the source buffer, at the time this view was created
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Read an element of this view.
+     *
+     * @param index an index less than {@code size()}
+     * @return the element of the source buffer that was moved to {@code index}
+     * @exception java.lang.IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    public byte get(int index) {
+      checkIndex(index, size);
+      return source.get(offset + (index < inverse.length ? inverse[index] : index));
+    }
+
+    /**
+     * Copy the elements of this view into a new buffer.
+     *
+     * @return a new heap buffer with position zero and capacity {@code size()}
+     */
+    public ByteBuffer materialize() {
+      byte[] array = new byte[size];
+      for (int i = 0; i < size; i++)
+        array[i] = get(i);
+      return ByteBuffer.wrap(array).order(source.order());
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.github.cyclophone;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <p>A read-only view of a list, rearranged by a permutation.
+ * The element at index {@code i} of the source is at index {@code permutation().apply(i)} of the view.</p>
+ *
+ * <p>Reads go through the inverse ranking to the source list, so no elements are copied.
+ * Changes to the source are visible in the view, as long as its size does not change.
+ * Viewing a view through another permutation does not stack indirections;
+ * the result is a view of the original source, through the product of both permutations.</p>
+ *
+ * @param <E> the element type
+ * @see Permutation#view(List)
+ */
+public final class PermutedList<E> extends AbstractList<E> implements RandomAccess {
+
+  private final List<E> source;
+  private final Permutation permutation;
+  private final int[] inverse;
+
+  PermutedList(List<E> source, Permutation permutation) {
+    this.source = source;
+    this.permutation = permutation;
+    this.inverse = Rankings.invert(PackedRankings.ints(permutation.packed()));
+  }
+
+  static <E> PermutedList<E> create(List<E> input, Permutation p) {
+    if (input instanceof PermutedList) {
+      PermutedList<E> view = (PermutedList<E>) input;
+      return new PermutedList<>(view.source, p.compose(view.permutation));
+    }
+    return new PermutedList<>(input instanceof RandomAccess ? input : new ArrayList<>(input), p);
+  }
+
+  /**
+   * Get the permutation of this view, relative to the source list.
+   *
+   * @return the permutation
+   */
+  public Permutation permutation() {
+    return permutation;
+  }
+
+  @Override
+  public E get(int index) {
+    if (index < 0 || index >= source.size()) {
+      throw new IndexOutOfBoundsException("index: " + index + ", size: " + source.size());
+    }
+    return source.get(index < inverse.length ? inverse[index] : index);
+  }
+
+  @Override
+  public int size() {
+    return source.size();
+  }
+
+  /**
+   * Copy the elements of this view into a new list.
+   *
+   * @return a new, modifiable list that is equal to this view
+   */
+  public List<E> materialize() {
+    return new ArrayList<>(this);
+  }
+}
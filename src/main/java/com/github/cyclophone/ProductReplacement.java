@@ -0,0 +1,58 @@
+package com.github.cyclophone;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>A sampler of random elements of the group that is generated by some permutations,
+ * using the product replacement algorithm with an accumulator ("rattle").</p>
+ *
+ * <p>The state is a short list of group elements, initially the generators.
+ * Each step replaces one of them by its product with another one, or the other one's inverse,
+ * and multiplies the accumulator by the result.
+ * After a burn-in phase, the accumulator is close to uniformly distributed in the generated group.
+ * The group itself is never built, so each sample costs a few compositions.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @see RandomPermutations#productReplacement(Permutation...)
+ */
+public final class ProductReplacement {
+
+  private static final int MIN_SLOTS = 10;
+  private static final int BURN_IN = 100;
+
+  private final SplittableRandom random;
+  private final Permutation[] slots;
+  private Permutation accumulator = Permutation.identity();
+
+  ProductReplacement(SplittableRandom random, Permutation... generators) {
+    this.random = random;
+    int size = Math.max(MIN_SLOTS, 2 * generators.length);
+    this.slots = new Permutation[size];
+    for (int i = 0; i < size; i++)
+      slots[i] = generators.length == 0 ? Permutation.identity() : generators[i % generators.length];
+    for (int i = 0; i < BURN_IN; i++)
+      step();
+  }
+
+  private void step() {
+    int i = random.nextInt(slots.length);
+    int j = random.nextInt(slots.length - 1);
+    if (j >= i) {
+      j++;
+    }
+    Permutation other = random.nextBoolean() ? slots[j] : slots[j].invert();
+    slots[i] = random.nextBoolean() ? slots[i].compose(other) : other.compose(slots[i]);
+    accumulator = accumulator.compose(slots[i]);
+  }
+
+  /**
+   * Get a random element of the generated group.
+   *
+   * @return a nearly uniformly distributed element of the group
+   */
+  public Permutation next() {
+    step();
+    return accumulator;
+  }
+}
@@ -0,0 +1,240 @@
+package com.github.cyclophone;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>A generator of uniformly distributed random permutations, backed by a {@link SplittableRandom}.</p>
+ *
+ * <p>A generator that was created with a seed produces the same sequence of permutations on every run.
+ * An instance is not thread-safe; use {@link #split()} to obtain an independent generator for another thread.</p>
+ */
+public final class RandomPermutations {
+
+  private final SplittableRandom random;
+
+  private RandomPermutations(SplittableRandom random) {
+    this.random = random;
+  }
+
+  /**
+   * Create a generator with an unpredictable seed.
+   *
+   * @return a new generator
+   */
+  public static RandomPermutations create() {
+    return new RandomPermutations(new SplittableRandom());
+  }
+
+  /**
+   * Create a generator that is fully determined by the given seed.
+   *
+   * @param seed the seed
+   * @return a new generator
+   */
+  public static RandomPermutations seeded(long seed) {
+    return new RandomPermutations(new SplittableRandom(seed));
+  }
+
+  /**
+   * Create a new generator that does not share any state with this one.
+   * This modifies the state of this generator.
+   *
+   * @return a new generator
+   */
+  public RandomPermutations split() {
+    return new RandomPermutations(random.split());
+  }
+
+  /**
+   * Create a random permutation of degree {@code n}.
+   *
+   * @param n a non-negative number
+   * @return a uniformly distributed random permutation that does not move any index greater than or equal to {@code n}
+   * @exception java.lang.IllegalArgumentException if {@code n} is negative
+   */
+  public Permutation next(int n) {
+    if (n < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    int[] ranking = new int[n];
+    shuffleInto(ranking);
+    return Permutation.pack(ranking);
+  }
+
+  /**
+   * Create a random permutation of the given cycle type.
+   * All permutations of this cycle type are equally likely.
+   * A random ranking is cut into consecutive cycles of the given lengths,
+   * which takes {@code O(n)} steps, where {@code n} is the sum of the partition.
+   *
+   * @param partition the cycle lengths, including fixed points
+   * @return a uniformly distributed random element of the conjugacy class
+   * @exception java.lang.IllegalArgumentException if a part is less than {@code 1}
+   * @see Permutation#ofCycleType(int...)
+   */
+  public Permutation nextOfCycleType(int... partition) {
+    int n = 0;
+    for (int length : partition) {
+      if (length < 1) {
+        throw new IllegalArgumentException("cycle length must be positive: " + length);
+      }
+      n = Math.addExact(n, length);
+    }
+    int[] word = new int[n];
+    shuffleInto(word);
+    int[] ranking = new int[n];
+    int start = 0;
+    for (int length : partition) {
+      int end = start + length - 1;
+      for (int i = start; i < end; i++)
+        ranking[word[i]] = word[i + 1];
+      ranking[word[end]] = word[start];
+      start += length;
+    }
+    return Permutation.pack(ranking);
+  }
+
+  /**
+   * Create a random permutation of degree {@code n} without fixed points.
+   * All derangements are equally likely.
+   * This uses the algorithm of Martinez, Panholzer and Prodinger, which takes {@code O(n)} expected steps.
+   *
+   * @param n a number that is not equal to {@code 1}
+   * @return a uniformly distributed random derangement
+   * @exception java.lang.IllegalArgumentException if {@code n} is negative or {@code n == 1}
+   * @see Permutation#derangements(int)
+   */
+  public Permutation nextDerangement(int n) {
+    if (n < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    if (n == 1) {
+      throw new IllegalArgumentException("there is no derangement of degree 1");
+    }
+    double[] q = derangementRatios(n);
+    int[] ranking = ArrayUtil.range(n);
+    boolean[] marked = new boolean[n];
+    int u = n;
+    for (int i = n - 1; u >= 2; i--) {
+      if (marked[i]) {
+        continue;
+      }
+      int j;
+      do {
+        j = random.nextInt(i);
+      } while (marked[j]);
+      int tmp = ranking[i];
+      ranking[i] = ranking[j];
+      ranking[j] = tmp;
+      if (random.nextDouble() < q[u]) {
+        // close a cycle at j
+        marked[j] = true;
+        u--;
+      }
+      u--;
+    }
+    return Permutation.pack(ranking);
+  }
+
+  /**
+   * Calculate {@code q[u] = (u - 1) * D(u - 2) / D(u)}, where {@code D} counts derangements.
+   * With {@code d(u) = D(u) / u!} this is {@code d(u - 2) / (u * d(u))},
+   * which avoids large numbers because {@code d(u)} tends to {@code 1/e}.
+   */
+  private static double[] derangementRatios(int n) {
+    double[] d = new double[Math.max(n + 1, 2)];
+    d[0] = 1;
+    double term = 1;
+    for (int u = 1; u <= n; u++) {
+      term = -term / u;
+      d[u] = d[u - 1] + term;
+    }
+    double[] q = new double[n + 1];
+    for (int u = 2; u <= n; u++)
+      q[u] = d[u - 2] / (u * d[u]);
+    return q;
+  }
+
+  /**
+   * Create a sampler for the subgroup that is generated by the given permutations.
+   * The sampler uses its own generator, which is split from this one.
+   *
+   * @param generators some permutations
+   * @return a sampler of nearly uniform random elements of the generated group
+   * @see ProductReplacement
+   */
+  public ProductReplacement productReplacement(Permutation... generators) {
+    return new ProductReplacement(random.split(), generators);
+  }
+
+  /**
+   * Overwrite an array with a uniformly distributed random ranking of the same length.
+   * This uses the inside-out variant of the Fisher-Yates shuffle, so the previous content does not matter.
+   *
+   * @param dest an array
+   */
+  public void shuffleInto(int[] dest) {
+    shuffleInto(random, dest, 0, dest.length);
+  }
+
+  private static void shuffleInto(SplittableRandom random, int[] dest, int offset, int n) {
+    for (int i = 0; i < n; i++) {
+      int j = random.nextInt(i + 1);
+      dest[offset + i] = dest[offset + j];
+      dest[offset + j] = i;
+    }
+  }
+
+  /**
+   * Write {@code count} random rankings of length {@code n}, back to back, into a flat array.
+   * The ranking with index {@code k} occupies {@code dest[k * n]} to {@code dest[(k + 1) * n - 1]}.
+   *
+   * @param n the length of each ranking
+   * @param count the number of rankings
+   * @param dest an array of length not less than {@code n * count}
+   * @exception java.lang.IllegalArgumentException if {@code n} or {@code count} is negative,
+   * or if {@code dest} is too short
+   */
+  public void fill(int n, int count, int[] dest) {
+    checkFill(n, count, dest);
+    for (int k = 0; k < count; k++)
+      shuffleInto(random, dest, k * n, n);
+  }
+
+  /**
+   * Like {@link #fill(int, int, int[])}, but the work is divided into blocks which may run concurrently.
+   * Each block gets its own generator, split from this one in a fixed order,
+   * so the result depends only on the state of this generator and not on the scheduling.
+   * The result differs from the result of {@code fill}.
+   *
+   * @param n the length of each ranking
+   * @param count the number of rankings
+   * @param dest an array of length not less than {@code n * count}
+   * @exception java.lang.IllegalArgumentException if {@code n} or {@code count} is negative,
+   * or if {@code dest} is too short
+   */
+  public void fillParallel(int n, int count, int[] dest) {
+    checkFill(n, count, dest);
+    int blockSize = Math.max(1, Parallel.THRESHOLD / Math.max(n, 1));
+    int blocks = (int) (((long) count + blockSize - 1) / blockSize);
+    SplittableRandom[] generators = new SplittableRandom[blocks];
+    for (int b = 0; b < blocks; b++)
+      generators[b] = random.split();
+    Parallel.forEach(blocks, b -> {
+      SplittableRandom generator = generators[b];
+      int start = (int) Math.min(count, (long) b * blockSize);
+      int end = (int) Math.min(count, (long) (b + 1) * blockSize);
+      for (int k = start; k < end; k++)
+        shuffleInto(generator, dest, k * n, n);
+    });
+  }
+
+  private static void checkFill(int n, int count, int[] dest) {
+    if (n < 0 || count < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    if ((long) n * count > dest.length) {
+      ArrayUtil.lengthFailure();
+    }
+  }
+}
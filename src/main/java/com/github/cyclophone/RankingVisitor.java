@@ -0,0 +1,21 @@
+package com.github.cyclophone;
+
+/**
+ * A callback that receives the rankings of an enumeration one at a time.
+ *
+ * @see Permutation#forEachPermutation(int, RankingVisitor)
+ */
+@FunctionalInterface
+public interface RankingVisitor {
+
+  /**
+   * Receive the next ranking. The array is reused by the enumeration and must not be modified.
+   * Each ranking differs from the previous one by a single swap of the elements at {@code i} and {@code j},
+   * so that the caller may update its state incrementally.
+   *
+   * @param ranking the current ranking
+   * @param i the smaller index of the swap, or {@code -1} if this is the first ranking
+   * @param j the larger index of the swap, or {@code -1} if this is the first ranking
+   */
+  void visit(int[] ranking, int i, int j);
+}
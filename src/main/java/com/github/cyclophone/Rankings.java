@@ -1,11 +1,15 @@
 package com.github.cyclophone;
 
 import java.lang.reflect.Array;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -13,7 +17,6 @@ import static com.github.cyclophone.ArrayUtil.INT_0;
 import static com.github.cyclophone.ArrayUtil.checkLength;
 import static com.github.cyclophone.ArrayUtil.lengthFailure;
 import static com.github.cyclophone.ArrayUtil.negativeFailure;
-import static com.github.cyclophone.ArrayUtil.withIndex;
 import static java.lang.System.arraycopy;
 
 /**
@@ -24,8 +27,6 @@ final class Rankings {
   private Rankings() {
   }
 
-  private static final Comparator<int[]> COMPARE_FIRST = Comparator.comparingInt(a -> a[0]);
-
   /**
    * Check that the input ranking is valid. In order to be valid, each non-negative integer less than
    * {@code a.length} must appear exactly once.
@@ -53,7 +54,7 @@ final class Rankings {
    * @param ranking a ranking
    * @return the length that this ranking can be safely trimmed to
    */
-  private static int trimmedLength(int[] ranking) {
+  static int trimmedLength(int[] ranking) {
     for (int i = ranking.length - 1; i >= 0; i--)
       if (ranking[i] != i) {
         return i + 1;
@@ -149,14 +150,55 @@ final class Rankings {
    * @return the inverse ranking
    */
   static int[] invert(int[] ranking) {
-    int[][] rankingWithIndex = withIndex(ranking);
-    Arrays.sort(rankingWithIndex, COMPARE_FIRST);
     int[] inverted = new int[ranking.length];
     for (int i = 0; i < ranking.length; i += 1)
-      inverted[i] = rankingWithIndex[i][1];
+      inverted[ranking[i]] = i;
+    return inverted;
+  }
+
+  /**
+   * Calculate the inverse ranking, using multiple threads if the ranking is long enough.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking
+   * @return the inverse ranking
+   * @see Parallel#THRESHOLD
+   */
+  static int[] invertParallel(int[] ranking) {
+    int[] inverted = new int[ranking.length];
+    Parallel.forRange(ranking.length, (from, to) -> {
+      for (int i = from; i < to; i++)
+        inverted[ranking[i]] = i;
+    });
     return inverted;
   }
 
+  /**
+   * Invert a ranking in place, by walking its cycles.
+   * While this method runs, visited indexes are marked by storing the bitwise complement of their new value.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking, which will be modified
+   */
+  static void invertInPlace(int[] ranking) {
+    for (int i = 0; i < ranking.length; i++) {
+      if (ranking[i] < 0) {
+        continue;
+      }
+      int prev = i;
+      int current = ranking[i];
+      while (current != i) {
+        int next = ranking[current];
+        ranking[current] = ~prev;
+        prev = current;
+        current = next;
+      }
+      ranking[i] = ~prev;
+    }
+    for (int i = 0; i < ranking.length; i++)
+      ranking[i] = ~ranking[i];
+  }
+
   /**
    * Multiply two rankings.
    *
@@ -188,6 +230,301 @@ final class Rankings {
     return result;
   }
 
+  /**
+   * Multiply two rankings, using multiple threads if the result is long enough.
+   *
+   * @param lhs a ranking
+   * @param rhs another ranking
+   * @return the product of the input rankings, which is a new array
+   * @see Parallel#THRESHOLD
+   */
+  static int[] compParallel(int[] lhs, int[] rhs) {
+    int[] result = new int[Math.max(lhs.length, rhs.length)];
+    Parallel.forRange(result.length, (from, to) -> {
+      for (int i = from; i < to; i++) {
+        int n = i < rhs.length ? rhs[i] : i;
+        result[i] = n < lhs.length ? lhs[n] : n;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Raise a ranking to a power, by rotating each of its cycles.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking
+   * @param exponent a function that returns, for a given cycle length, the exponent modulo that length
+   * @return the power of the input ranking; this may not be trimmed
+   */
+  static int[] pow(int[] ranking, IntUnaryOperator exponent) {
+    int[] result = new int[ranking.length];
+    Arrays.fill(result, -1);
+    int[] cycle = new int[ranking.length];
+    int lastLength = 0;
+    int shift = 0;
+    for (int i = 0; i < ranking.length; i++) {
+      if (result[i] >= 0) {
+        continue;
+      }
+      int length = 0;
+      int j = i;
+      do {
+        cycle[length++] = j;
+        j = ranking[j];
+      } while (j != i);
+      if (length != lastLength) {
+        lastLength = length;
+        shift = exponent.applyAsInt(length);
+      }
+      for (int k = 0, target = shift; k < length; k++) {
+        result[cycle[k]] = cycle[target];
+        if (++target == length) {
+          target = 0;
+        }
+      }
+    }
+    return result;
+  }
+
+  /* ================= lexicographic rank ================= */
+
+  /**
+   * The largest {@code n} such that {@code n!} fits in a {@code long}.
+   */
+  static final int MAX_LONG_RANK_DEGREE = 20;
+
+  /**
+   * Check that {@code n} is a valid degree for a ranking of the given length.
+   *
+   * @param length the length of a ranking
+   * @param n the degree
+   * @param max the maximum degree
+   * @exception java.lang.IllegalArgumentException if {@code n < length} or {@code n > max}
+   */
+  static void checkDegree(int length, int n, int max) {
+    if (n < length) {
+      throw new IllegalArgumentException("degree " + n + " is less than ranking length " + length);
+    }
+    if (n > max) {
+      throw new IllegalArgumentException("degree " + n + " is greater than " + max);
+    }
+  }
+
+  /**
+   * Calculate the digits of the Lehmer code of a ranking, using a Fenwick tree.
+   * The digit at {@code i} is the number of indexes {@code j > i} with {@code ranking[j] < ranking[i]}.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking
+   * @param tree a scratch array of length not less than {@code ranking.length + 1}
+   * @param digits an array of length not less than {@code ranking.length}, where the digits are stored
+   */
+  private static void lehmerCode(int[] ranking, int[] tree, int[] digits) {
+    int n = ranking.length;
+    Arrays.fill(tree, 0, n + 1, 0);
+    for (int i = 0; i < n; i++) {
+      int value = ranking[i];
+      int usedBelow = 0;
+      for (int k = value; k > 0; k -= k & -k)
+        usedBelow += tree[k];
+      digits[i] = value - usedBelow;
+      for (int k = value + 1; k <= n; k += k & -k)
+        tree[k]++;
+    }
+  }
+
+  /**
+   * Replace each digit of a Lehmer code by the corresponding value, using a Fenwick tree.
+   * The result is a ranking of length {@code code.length}.
+   *
+   * @param code a Lehmer code, where {@code code[i] < code.length - i}; this is overwritten with the ranking
+   * @param tree a scratch array of length not less than {@code code.length + 1}
+   */
+  private static void fromLehmerCode(int[] code, int[] tree) {
+    int n = code.length;
+    // every value is available: tree[k] is the size of the range (k - lowbit(k), k]
+    for (int k = 1; k <= n; k++)
+      tree[k] = k & -k;
+    int top = Integer.highestOneBit(Math.max(n, 1));
+    for (int i = 0; i < n; i++) {
+      // find the smallest value with code[i] available values below it
+      int remaining = code[i];
+      int pos = 0;
+      for (int step = top; step > 0; step >>= 1) {
+        int next = pos + step;
+        if (next <= n && tree[next] <= remaining) {
+          pos = next;
+          remaining -= tree[next];
+        }
+      }
+      code[i] = pos;
+      for (int k = pos + 1; k <= n; k += k & -k)
+        tree[k]--;
+    }
+  }
+
+  /**
+   * Calculate the lexicographic rank of a ranking among all rankings of length {@code n}.
+   * The input is filled up to length {@code n} with fixed points.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking of length not greater than {@code n}
+   * @param n a number not greater than {@link #MAX_LONG_RANK_DEGREE}
+   * @param tree a scratch array of length not less than {@code ranking.length + 1}
+   * @param digits a scratch array of length not less than {@code ranking.length}
+   * @return the number of rankings of length {@code n} that are lexicographically smaller
+   */
+  static long lexRank(int[] ranking, int n, int[] tree, int[] digits) {
+    lehmerCode(ranking, tree, digits);
+    long rank = 0;
+    for (int i = 0; i < ranking.length; i++)
+      rank = rank * (n - i) + digits[i];
+    for (int k = n - ranking.length; k > 1; k--)
+      rank *= k;
+    return rank;
+  }
+
+  /**
+   * Calculate the lexicographic rank of a ranking among all rankings of length {@code n}.
+   * The input is filled up to length {@code n} with fixed points.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking of length not greater than {@code n}
+   * @param n a number not less than the length of {@code ranking}
+   * @return the number of rankings of length {@code n} that are lexicographically smaller
+   */
+  static BigInteger lexRankExact(int[] ranking, int n) {
+    int[] digits = new int[ranking.length];
+    lehmerCode(ranking, new int[ranking.length + 1], digits);
+    BigInteger rank = BigInteger.ZERO;
+    for (int i = 0; i < ranking.length; i++)
+      rank = rank.multiply(BigInteger.valueOf(n - i)).add(BigInteger.valueOf(digits[i]));
+    return rank.multiply(factorial(n - ranking.length));
+  }
+
+  /**
+   * Find the ranking of length {@code dest.length} with the given lexicographic rank.
+   *
+   * @param rank a number between {@code 0} (inclusive) and {@code dest.length!} (exclusive)
+   * @param dest an array of length not greater than {@link #MAX_LONG_RANK_DEGREE}, where the ranking is stored
+   * @param tree a scratch array of length not less than {@code dest.length + 1}
+   */
+  static void lexUnrank(long rank, int[] dest, int[] tree) {
+    int n = dest.length;
+    for (int i = n - 1; i >= 0; i--) {
+      dest[i] = (int) (rank % (n - i));
+      rank /= n - i;
+    }
+    fromLehmerCode(dest, tree);
+  }
+
+  /**
+   * Find the ranking of length {@code dest.length} with the given lexicographic rank.
+   *
+   * @param rank a number between {@code 0} (inclusive) and {@code dest.length!} (exclusive)
+   * @param dest an array where the ranking is stored
+   */
+  static void lexUnrank(BigInteger rank, int[] dest) {
+    int n = dest.length;
+    for (int i = n - 1; i >= 0; i--) {
+      BigInteger[] qr = rank.divideAndRemainder(BigInteger.valueOf(n - i));
+      dest[i] = qr[1].intValue();
+      rank = qr[0];
+    }
+    fromLehmerCode(dest, new int[n + 1]);
+  }
+
+  /**
+   * Calculate {@code n!}.
+   *
+   * @param n a non-negative number
+   * @return the factorial of {@code n}
+   */
+  static BigInteger factorial(int n) {
+    BigInteger result = BigInteger.ONE;
+    for (int k = 2; k <= n; k++)
+      result = result.multiply(BigInteger.valueOf(k));
+    return result;
+  }
+
+  /**
+   * Calculate {@code n!}.
+   *
+   * @param n a number between {@code 0} and {@link #MAX_LONG_RANK_DEGREE}
+   * @return the factorial of {@code n}
+   */
+  static long factorialLong(int n) {
+    long result = 1;
+    for (int k = 2; k <= n; k++)
+      result *= k;
+    return result;
+  }
+
+  /* ================= Myrvold-Ruskey rank ================= */
+
+  /**
+   * Calculate the Myrvold-Ruskey rank of a ranking in linear time.
+   * This is a bijection between the rankings of length {@code n} and the numbers below {@code n!},
+   * but unlike {@link #lexRank(int[], int, int[], int[])} it does not respect the lexicographic order.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking of length not greater than {@link #MAX_LONG_RANK_DEGREE}
+   * @return a number between {@code 0} (inclusive) and {@code ranking.length!} (exclusive)
+   * @see #unrankMR(int, long, int[])
+   */
+  static long rankMR(int[] ranking) {
+    return rankMR(ranking, new int[2 * ranking.length]);
+  }
+
+  /**
+   * Calculate the Myrvold-Ruskey rank of a ranking in linear time, without allocating.
+   * This method does not check if the input is indeed a ranking and may have unexpected results otherwise.
+   *
+   * @param ranking a ranking of length not greater than {@link #MAX_LONG_RANK_DEGREE}; this is not modified
+   * @param scratch an array of length not less than {@code 2 * ranking.length}
+   * @return a number between {@code 0} (inclusive) and {@code ranking.length!} (exclusive)
+   */
+  static long rankMR(int[] ranking, int[] scratch) {
+    int n = ranking.length;
+    // scratch[0..n) is a copy of the ranking, scratch[n..2n) its inverse
+    System.arraycopy(ranking, 0, scratch, 0, n);
+    for (int i = 0; i < n; i++)
+      scratch[n + ranking[i]] = i;
+    long rank = 0;
+    long mult = 1;
+    for (int k = n; k > 1; k--) {
+      int s = scratch[k - 1];
+      int j = scratch[n + k - 1];
+      scratch[k - 1] = k - 1;
+      scratch[j] = s;
+      scratch[n + s] = j;
+      rank += s * mult;
+      mult *= k;
+    }
+    return rank;
+  }
+
+  /**
+   * Find the ranking of length {@code n} with the given Myrvold-Ruskey rank, in linear time.
+   *
+   * @param n a number between {@code 0} and {@link #MAX_LONG_RANK_DEGREE}
+   * @param rank a number between {@code 0} (inclusive) and {@code n!} (exclusive)
+   * @param dest an array of length not less than {@code n}, where the ranking is stored
+   * @see #rankMR(int[])
+   */
+  static void unrankMR(int n, long rank, int[] dest) {
+    for (int i = 0; i < n; i++)
+      dest[i] = i;
+    for (int k = n; k > 1; k--) {
+      int j = (int) (rank % k);
+      int tmp = dest[k - 1];
+      dest[k - 1] = dest[j];
+      dest[j] = tmp;
+      rank /= k;
+    }
+  }
+
   /* ================= nextOffset ================= */
 
   /**
@@ -373,6 +710,174 @@ final class Rankings {
     return result;
   }
 
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static int[] apply(int[] ranking, int[] input) {
+    checkLength(ranking.length, input.length);
+    int[] result = new int[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static long[] apply(int[] ranking, long[] input) {
+    checkLength(ranking.length, input.length);
+    long[] result = new long[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static double[] apply(int[] ranking, double[] input) {
+    checkLength(ranking.length, input.length);
+    double[] result = new double[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static float[] apply(int[] ranking, float[] input) {
+    checkLength(ranking.length, input.length);
+    float[] result = new float[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static short[] apply(int[] ranking, short[] input) {
+    checkLength(ranking.length, input.length);
+    short[] result = new short[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static char[] apply(int[] ranking, char[] input) {
+    checkLength(ranking.length, input.length);
+    char[] result = new char[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static byte[] apply(int[] ranking, byte[] input) {
+    checkLength(ranking.length, input.length);
+    byte[] result = new byte[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
+  /**
+   * Apply the ranking to the input array. An element at {@code i} is moved to {@code ranking[i]}.
+   * Indexes that are greater or equal to the length of the ranking are not moved.
+   * This method does not check that the first argument is indeed a ranking.
+   *
+   * @param ranking a ranking
+   * @param input an input array
+   * @return the result of applying the ranking to the input
+   * @exception java.lang.IllegalArgumentException if the length of {@code input} is less than the length of {@code ranking}
+   */
+  static boolean[] apply(int[] ranking, boolean[] input) {
+    checkLength(ranking.length, input.length);
+    boolean[] result = new boolean[input.length];
+    for (int i = 0; i < ranking.length; i += 1)
+      result[ranking[i]] = input[i];
+    if (input.length > ranking.length) {
+      arraycopy(input, ranking.length, result, ranking.length, input.length - ranking.length);
+    }
+    return result;
+  }
+
   /**
    * Apply the ranking to the input list. An element at {@code i} is moved to {@code ranking[i]}.
    * Indexes that are greater or equal to the length of the ranking are not moved.
@@ -436,41 +941,165 @@ final class Rankings {
   }
 
   /**
-   * <p>Returns all possible permutations of given length.</p>
+   * Visit all rankings of length {@code n}, using Heap's algorithm.
+   * A single buffer is reused, and each step is a single swap.
    *
-   * <h3>Note that this stream may contain modified versions of the same array,
-   * so be sure to make array copies if immutability is needed.</h3>
+   * @param n a non-negative number
+   * @param visitor the callback; this is invoked {@code n!} times
+   */
+  static void forEachPermutation(int n, RankingVisitor visitor) {
+    int[] ranking = new int[n];
+    for (int i = 0; i < n; i++)
+      ranking[i] = i;
+    int[] counters = new int[n];
+    visitor.visit(ranking, -1, -1);
+    int i = 1;
+    while (i < n) {
+      if (counters[i] < i) {
+        int j = (i & 1) == 0 ? 0 : counters[i];
+        int tmp = ranking[j];
+        ranking[j] = ranking[i];
+        ranking[i] = tmp;
+        visitor.visit(ranking, j, i);
+        counters[i]++;
+        i = 1;
+      } else {
+        counters[i] = 0;
+        i++;
+      }
+    }
+  }
+
+  /**
+   * Rearrange a ranking into the lexicographically next ranking, in place.
+   * This takes amortized constant time.
+   * The input does not have to be a ranking: This works for any array,
+   * although the order is not strict if it contains duplicates.
+   *
+   * @param ranking an array
+   * @return the index of the leftmost element that was changed,
+   * or {@code -1} if {@code ranking} is already the last ranking; in this case it is not modified
+   */
+  static int nextPermutation(int[] ranking) {
+    int i = ranking.length - 2;
+    while (i >= 0 && ranking[i] >= ranking[i + 1])
+      i--;
+    if (i < 0) {
+      return -1;
+    }
+    int j = ranking.length - 1;
+    while (ranking[j] <= ranking[i])
+      j--;
+    int tmp = ranking[i];
+    ranking[i] = ranking[j];
+    ranking[j] = tmp;
+    reverse(ranking, i + 1, ranking.length);
+    return i;
+  }
+
+  /**
+   * Rearrange a ranking into the lexicographically previous ranking, in place.
+   * This is the inverse of {@link #nextPermutation(int[])}.
+   *
+   * @param ranking an array
+   * @return the index of the leftmost element that was changed,
+   * or {@code -1} if {@code ranking} is already the first ranking; in this case it is not modified
+   */
+  static int prevPermutation(int[] ranking) {
+    int i = ranking.length - 2;
+    while (i >= 0 && ranking[i] <= ranking[i + 1])
+      i--;
+    if (i < 0) {
+      return -1;
+    }
+    int j = ranking.length - 1;
+    while (ranking[j] >= ranking[i])
+      j--;
+    int tmp = ranking[i];
+    ranking[i] = ranking[j];
+    ranking[j] = tmp;
+    reverse(ranking, i + 1, ranking.length);
+    return i;
+  }
+
+  private static void reverse(int[] a, int from, int to) {
+    for (int i = from, j = to - 1; i < j; i++, j--) {
+      int tmp = a[i];
+      a[i] = a[j];
+      a[j] = tmp;
+    }
+  }
+
+  /**
+   * <p>Returns all possible permutations of given length, in lexicographic order.</p>
+   *
+   * <p>If {@code n <= 20}, the stream is sized and splits efficiently.</p>
    *
    * @param n length of permutations to generate
    * @return all possible permutations of length {@code n}; this will contain {@code n!}
    * different permutations
    */
   static Stream<int[]> symmetricGroup(int n) {
-    Iterable<int[]> it = () -> new SymmetricGroupIterator(n);
-    return StreamSupport.stream(it.spliterator(), false);
+    return symmetricGroup(n, int[]::clone);
   }
 
-  private static class SymmetricGroupIterator implements Iterator<int[]> {
-
-    FrameStack stack; // should be faster than java.util.Stack
-    int n;
-
-    SymmetricGroupIterator(int n) {
-      this.stack = new FrameStack(n);
-      this.n = n;
+  /**
+   * Stream all rankings of length {@code n} in lexicographic order, and convert each to an element.
+   *
+   * @param n a non-negative number
+   * @param mapper a function that creates an element from a ranking;
+   *               the ranking is reused and must not be retained by the mapper
+   * @param <E> element type
+   * @return a stream of {@code n!} elements
+   */
+  static <E> Stream<E> symmetricGroup(int n, Function<int[], E> mapper) {
+    if (n <= MAX_LONG_RANK_DEGREE) {
+      return symmetricGroup(n, 0, factorialLong(n), mapper);
     }
+    // the size does not fit in a long; nobody is going to consume all of this anyway
+    return StreamSupport.stream(lexicographicWalk(ArrayUtil.range(n), mapper), false);
+  }
 
-    @Override
-    public boolean hasNext() {
-      return !stack.isEmpty();
-    }
+  /**
+   * Create an unsized spliterator that starts at the given array and advances it by
+   * {@link #nextPermutation(int[])}, until the lexicographically last arrangement is reached.
+   *
+   * @param start the first array; this is modified by the spliterator
+   * @param mapper a function that creates an element from the current array;
+   *               the array is reused and must not be retained by the mapper
+   * @param <E> element type
+   * @return a spliterator
+   */
+  static <E> Spliterator<E> lexicographicWalk(int[] start, Function<int[], E> mapper) {
+    return new Spliterators.AbstractSpliterator<E>(
+        Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+      private boolean started;
 
-    @Override
-    public int[] next() {
-      while (stack.getLastLength() < n) {
-        stack.expandLast();
+      @Override
+      public boolean tryAdvance(Consumer<? super E> action) {
+        if (!started) {
+          started = true;
+        } else if (nextPermutation(start) < 0) {
+          return false;
+        }
+        action.accept(mapper.apply(start));
+        return true;
       }
-      return stack.removeLast();
-    }
+    };
+  }
+
+  /**
+   * Stream the rankings of length {@code n} whose lexicographic rank is in the given range.
+   *
+   * @param n a number between {@code 0} and {@link #MAX_LONG_RANK_DEGREE}
+   * @param fromRank first rank, inclusive
+   * @param toRank last rank, exclusive
+   * @param mapper a function that creates an element from a ranking;
+   *               the ranking is reused and must not be retained by the mapper
+   * @param <E> element type
+   * @return a stream of {@code toRank - fromRank} elements
+   */
+  static <E> Stream<E> symmetricGroup(int n, long fromRank, long toRank, Function<int[], E> mapper) {
+    return StreamSupport.stream(new SymmetricGroupSpliterator<>(n, fromRank, toRank, mapper), false);
   }
 }
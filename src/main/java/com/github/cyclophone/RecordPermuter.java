@@ -0,0 +1,374 @@
+package com.github.cyclophone;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>Rearrangement of the fixed-width records of a file into another file,
+ * using a bounded amount of memory, independent of the file size.</p>
+ *
+ * <p>The record at index {@code i} of the source is written to index {@code ranking[i]} of the target.
+ * If the destinations of all records fit in memory, they are placed in a buffer,
+ * which is then written to the target.
+ * Otherwise, each record is tagged with its destination and appended to one of at most {@link #MAX_BUCKETS}
+ * bucket files, where each bucket covers a range of consecutive destinations.
+ * The buckets are then processed in the same way, one after the other,
+ * so that a bucket that is still too large for memory is split again in a further pass.
+ * Thus all reads and writes are sequential or bucket-sized,
+ * at most {@code MAX_BUCKETS + 1} bucket files are open at any time,
+ * and the temporary disk space is about the size of the source.</p>
+ */
+public final class RecordPermuter {
+
+  /**
+   * The maximum number of buckets that a range of destinations is split into, in a single pass.
+   */
+  static final int MAX_BUCKETS = 256;
+
+  /**
+   * The size of a destination tag in a bucket file.
+   */
+  private static final int TAG = Long.BYTES;
+
+  /**
+   * The maximum size of a read buffer.
+   */
+  private static final int READ_BUFFER = 1 << 16;
+
+  private final int recordSize;
+  private final int entrySize;
+  private final long records;
+  private final Path tempDir;
+
+  // memory: two read buffers of at most an eighth each, the region and the write buffers of at most 3/8 each
+  private final int readSize;
+  private final int regionRecords;
+  private final int fanout;
+  private final int writeSize;
+  private ByteBuffer region;
+
+  private RecordPermuter(int recordSize, long records, long memory, Path tempDir) {
+    this.recordSize = recordSize;
+    this.entrySize = TAG + recordSize;
+    this.records = records;
+    this.tempDir = tempDir;
+    long part = Math.min(memory / 8 * 3, Integer.MAX_VALUE);
+    this.readSize = (int) Math.min(READ_BUFFER, memory / 8);
+    this.regionRecords = (int) (part / recordSize);
+    this.fanout = (int) Math.min(MAX_BUCKETS, part / entrySize);
+    this.writeSize = (int) Math.max(1, Math.min(READ_BUFFER, part / fanout) / entrySize) * entrySize;
+  }
+
+  /**
+   * A ranking that is read sequentially.
+   */
+  private interface RankingReader {
+    long next() throws IOException;
+  }
+
+  /**
+   * A sequence of records with their destinations.
+   */
+  private interface Entries {
+
+    /**
+     * Read the next entry.
+     *
+     * @param record a buffer with room for one record, where the record is stored
+     * @return the destination of the record, or {@code -1} if there are no more entries
+     */
+    long next(ByteBuffer record) throws IOException;
+  }
+
+  /**
+   * Permute the records of a file, where the ranking is given as a permutation.
+   * Records at an index that is not less than {@code p.length()} are not moved.
+   *
+   * @param p a permutation
+   * @param source the source file, opened for reading, whose size is a multiple of {@code recordSize}
+   * @param target the target file, opened for writing
+   * @param recordSize the number of bytes per record
+   * @param memory the number of bytes of memory to use, at least {@code 8 * (recordSize + 8)}
+   * @param tempDir the directory where bucket files are created
+   * @throws IOException if an I/O error occurs
+   * @exception java.lang.IllegalArgumentException if the arguments are inconsistent
+   */
+  public static void apply(Permutation p, FileChannel source, FileChannel target,
+                           int recordSize, long memory, Path tempDir) throws IOException {
+    int[] ranking = PackedRankings.ints(p.packed());
+    RecordPermuter permuter = create(source, recordSize, memory, tempDir);
+    if (ranking.length > permuter.records) {
+      throw new IllegalArgumentException("permutation too long: " + ranking.length);
+    }
+    int[] index = {0};
+    permuter.run(() -> {
+      int i = index[0]++;
+      return i < ranking.length ? ranking[i] : i;
+    }, source, target);
+  }
+
+  /**
+   * Permute the records of a file, where the ranking is stored in another file.
+   * The ranking file contains one 8-byte destination index per record, in the given byte order.
+   * The destinations are range checked, but it is not checked that they are distinct.
+   *
+   * @param ranking the ranking file, opened for reading
+   * @param order the byte order of the ranking file
+   * @param source the source file, opened for reading, whose size is a multiple of {@code recordSize}
+   * @param target the target file, opened for writing
+   * @param recordSize the number of bytes per record
+   * @param memory the number of bytes of memory to use, at least {@code 8 * (recordSize + 8)}
+   * @param tempDir the directory where bucket files are created
+   * @throws IOException if an I/O error occurs
+   * @exception java.lang.IllegalArgumentException if the arguments are inconsistent,
+   * or if the ranking contains an index that is out of range
+   */
+  public static void apply(FileChannel ranking, ByteOrder order, FileChannel source, FileChannel target,
+                           int recordSize, long memory, Path tempDir) throws IOException {
+    RecordPermuter permuter = create(source, recordSize, memory, tempDir);
+    if (ranking.size() != permuter.records * Long.BYTES) {
+      ArrayUtil.lengthFailure();
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(permuter.readSize / Long.BYTES * Long.BYTES).order(order);
+    buffer.flip();
+    long[] position = {0};
+    permuter.run(() -> {
+      if (!buffer.hasRemaining()) {
+        buffer.clear();
+        position[0] += readFully(ranking, buffer, position[0]);
+        buffer.flip();
+      }
+      return buffer.getLong();
+    }, source, target);
+  }
+
+  private static RecordPermuter create(FileChannel source, int recordSize, long memory, Path tempDir) throws IOException {
+    if (recordSize <= 0) {
+      throw new IllegalArgumentException("record size must be positive: " + recordSize);
+    }
+    if (memory < 8L * (recordSize + TAG)) {
+      throw new IllegalArgumentException("not enough memory: " + memory);
+    }
+    long size = source.size();
+    if (size % recordSize != 0) {
+      throw new IllegalArgumentException("file size " + size + " is not a multiple of " + recordSize);
+    }
+    return new RecordPermuter(recordSize, size / recordSize, memory, tempDir);
+  }
+
+  private void run(RankingReader ranking, FileChannel source, FileChannel target) throws IOException {
+    ByteBuffer input = ByteBuffer.allocate(readSize / recordSize * recordSize);
+    input.flip();
+    long[] state = {0, 0}; // index of the next record, file position of the input buffer
+    Entries entries = record -> {
+      if (state[0] == records) {
+        return -1;
+      }
+      state[0]++;
+      if (!input.hasRemaining()) {
+        input.clear();
+        state[1] += readFully(source, input, state[1]);
+        input.flip();
+      }
+      long dest = ranking.next();
+      if (dest < 0 || dest >= records) {
+        throw new IllegalArgumentException("index out of range: " + dest);
+      }
+      copyRecord(input, record);
+      return dest;
+    };
+    permute(entries, 0, records, target);
+  }
+
+  /**
+   * Move the entries, whose destinations are in the range from {@code first} to {@code first + count},
+   * to the target.
+   */
+  private void permute(Entries entries, long first, long count, FileChannel target) throws IOException {
+    if (count <= regionRecords) {
+      collect(entries, first, (int) count, target);
+      return;
+    }
+    permuteBuckets(split(entries, first, count), first, count, target);
+  }
+
+  /**
+   * Distribute the entries into new bucket files, each covering at most {@code ceil(count / buckets)}
+   * consecutive destinations.
+   *
+   * @return the bucket files
+   */
+  private Path[] split(Entries entries, long first, long count) throws IOException {
+    int buckets = (int) Math.min(fanout, (count + regionRecords - 1) / regionRecords);
+    Path[] paths = new Path[buckets];
+    boolean success = false;
+    try {
+      for (int b = 0; b < buckets; b++)
+        paths[b] = Files.createTempFile(tempDir, "bucket", ".tmp");
+      distribute(entries, first, (count + buckets - 1) / buckets, paths);
+      success = true;
+      return paths;
+    } finally {
+      if (!success) {
+        delete(paths);
+      }
+    }
+  }
+
+  /**
+   * Move the entries of each bucket to the target, splitting it again if it is too large for memory.
+   * Each bucket file is closed and deleted before its own buckets are processed.
+   */
+  private void permuteBuckets(Path[] paths, long first, long count, FileChannel target) throws IOException {
+    long width = (count + paths.length - 1) / paths.length;
+    try {
+      for (int b = 0; b < paths.length; b++) {
+        long bucketFirst = first + b * width;
+        long bucketCount = Math.max(0, Math.min(width, first + count - bucketFirst));
+        Path[] children = null;
+        try (FileChannel channel = FileChannel.open(paths[b], StandardOpenOption.READ)) {
+          if (bucketCount <= regionRecords) {
+            collect(bucketEntries(channel), bucketFirst, (int) bucketCount, target);
+          } else {
+            children = split(bucketEntries(channel), bucketFirst, bucketCount);
+          }
+        }
+        Files.delete(paths[b]);
+        paths[b] = null;
+        if (children != null) {
+          permuteBuckets(children, bucketFirst, bucketCount, target);
+        }
+      }
+    } finally {
+      delete(paths);
+    }
+  }
+
+  private static void delete(Path[] paths) throws IOException {
+    for (Path path : paths)
+      if (path != null) {
+        Files.deleteIfExists(path);
+      }
+  }
+
+  private Entries bucketEntries(FileChannel channel) {
+    ByteBuffer buffer = ByteBuffer.allocate(readSize / entrySize * entrySize);
+    buffer.flip();
+    long[] position = {0};
+    return record -> {
+      if (!buffer.hasRemaining()) {
+        buffer.clear();
+        int read = readFully(channel, buffer, position[0]);
+        buffer.flip();
+        if (read == 0) {
+          return -1;
+        }
+        position[0] += read;
+      }
+      long dest = buffer.getLong();
+      copyRecord(buffer, record);
+      return dest;
+    };
+  }
+
+  // append each entry to the bucket of its destination
+  private void distribute(Entries entries, long first, long width, Path[] paths) throws IOException {
+    FileChannel[] channels = new FileChannel[paths.length];
+    ByteBuffer[] buffers = new ByteBuffer[paths.length];
+    long[] positions = new long[paths.length];
+    ByteBuffer record = ByteBuffer.allocate(recordSize);
+    try {
+      for (int b = 0; b < paths.length; b++)
+        channels[b] = FileChannel.open(paths[b], StandardOpenOption.WRITE);
+      for (long dest = entries.next(record); dest >= 0; dest = entries.next(record)) {
+        int b = (int) ((dest - first) / width);
+        ByteBuffer buffer = buffers[b];
+        if (buffer == null) {
+          buffer = buffers[b] = ByteBuffer.allocate(writeSize);
+        }
+        if (buffer.remaining() < entrySize) {
+          buffer.flip();
+          positions[b] += writeFully(channels[b], buffer, positions[b]);
+          buffer.clear();
+        }
+        buffer.putLong(dest);
+        record.flip();
+        buffer.put(record);
+        record.clear();
+      }
+      for (int b = 0; b < paths.length; b++) {
+        if (buffers[b] != null) {
+          buffers[b].flip();
+          writeFully(channels[b], buffers[b], positions[b]);
+        }
+      }
+    } finally {
+      for (FileChannel channel : channels)
+        if (channel != null) {
+          channel.close();
+        }
+    }
+  }
+
+  // place the entries into the region buffer, and write it to the target
+  private void collect(Entries entries, long first, int count, FileChannel target) throws IOException {
+    if (region == null) {
+      region = ByteBuffer.allocate((int) Math.min(regionRecords, records) * recordSize);
+    }
+    region.clear();
+    ByteBuffer record = ByteBuffer.allocate(recordSize);
+    for (long dest = entries.next(record); dest >= 0; dest = entries.next(record)) {
+      long offset = (dest - first) * recordSize;
+      if (offset < 0 || offset >= (long) count * recordSize) {
+        throw new IllegalStateException("destination out of range: " + dest);
+      }
+      record.flip();
+      region.position((int) offset);
+      region.put(record);
+      record.clear();
+    }
+    region.clear().limit(count * recordSize);
+    writeFully(target, region, first * recordSize);
+  }
+
+  private void copyRecord(ByteBuffer from, ByteBuffer to) {
+    int limit = from.limit();
+    from.limit(from.position() + recordSize);
+    to.put(from);
+    from.limit(limit);
+  }
+
+  /**
+   * Read from a file until the buffer is full or the end of the file is reached.
+   *
+   * @return the number of bytes read
+   */
+  private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    int total = 0;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  /**
+   * Write the remaining bytes of the buffer to a file.
+   *
+   * @return the number of bytes written
+   */
+  private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    int total = 0;
+    while (buffer.hasRemaining())
+      total += channel.write(buffer, position + total);
+    return total;
+  }
+}
@@ -0,0 +1,269 @@
+package com.github.cyclophone;
+
+/**
+ * <p>A permutation of at most {@value #MAX_DEGREE} points, packed into a single {@code long}.</p>
+ *
+ * <p>The image of index {@code i} is stored in the 4-bit nibble at bit offset {@code 60 - 4 * i},
+ * so the most significant nibble holds the image of {@code 0}.
+ * All operations work on this {@code long} and do not allocate arrays.
+ * The static methods that take a packed {@code long} can be used to avoid allocating
+ * {@code SmallPermutation} instances altogether.</p>
+ *
+ * @see Permutation
+ */
+public final class SmallPermutation implements Comparable<SmallPermutation> {
+
+  /**
+   * The maximum length of a permutation that can be represented by this class.
+   */
+  public static final int MAX_DEGREE = 16;
+
+  /*
+   *  Least common multiple of the numbers 1 to 16.
+   *  The order of every permutation of degree 16 divides this number.
+   */
+  private static final int EXPONENT = 720720;
+
+  private static final long IDENTITY_BITS = 0x0123456789abcdefL;
+
+  private static final SmallPermutation IDENTITY = new SmallPermutation(IDENTITY_BITS);
+
+  private final long ranking;
+
+  private SmallPermutation(long ranking) {
+    this.ranking = ranking;
+  }
+
+  /**
+   * Return the identity permutation.
+   *
+   * @return the identity permutation
+   */
+  public static SmallPermutation identity() {
+    return IDENTITY;
+  }
+
+  /**
+   * Convert a permutation to the packed representation.
+   *
+   * @param p a permutation of length not greater than {@value #MAX_DEGREE}
+   * @return a packed version of {@code p}
+   * @exception java.lang.IllegalArgumentException if {@code p} moves an index that is not less than {@value #MAX_DEGREE}
+   */
+  public static SmallPermutation of(Permutation p) {
+    if (p.length() > MAX_DEGREE) {
+      throw new IllegalArgumentException("length must not be greater than " + MAX_DEGREE + ": " + p.length());
+    }
+    int[] ranking = p.getRanking();
+    long bits = IDENTITY_BITS;
+    for (int i = 0; i < ranking.length; i++) {
+      int shift = shift(i);
+      bits = (bits & ~(0xfL << shift)) | ((long) ranking[i] << shift);
+    }
+    return new SmallPermutation(bits);
+  }
+
+  /**
+   * Create an instance from its packed representation.
+   *
+   * @param packed a packed ranking, as returned by {@link #toLong()}
+   * @return the permutation represented by {@code packed}
+   * @exception java.lang.IllegalArgumentException if {@code packed} does not represent a permutation
+   */
+  public static SmallPermutation fromLong(long packed) {
+    int seen = 0;
+    for (int i = 0; i < MAX_DEGREE; i++)
+      seen |= 1 << apply(packed, i);
+    if (seen != 0xffff) {
+      throw new IllegalArgumentException("argument is not a packed ranking: " + Long.toHexString(packed));
+    }
+    return packed == IDENTITY_BITS ? IDENTITY : new SmallPermutation(packed);
+  }
+
+  /**
+   * Get the packed representation of this permutation.
+   *
+   * @return a {@code long} that holds the image of each index in a 4-bit nibble
+   */
+  public long toLong() {
+    return ranking;
+  }
+
+  /**
+   * Convert this instance back to a {@link Permutation}.
+   *
+   * @return an equivalent permutation
+   */
+  public Permutation toPermutation() {
+    int[] result = new int[MAX_DEGREE];
+    for (int i = 0; i < MAX_DEGREE; i++)
+      result[i] = apply(ranking, i);
+    return Permutation.define0(result);
+  }
+
+  private static int shift(int i) {
+    return 60 - 4 * i;
+  }
+
+  /**
+   * Move an index.
+   *
+   * @param packed a packed ranking
+   * @param i an index less than {@value #MAX_DEGREE}
+   * @return the image of {@code i}
+   */
+  public static int apply(long packed, int i) {
+    return (int) (packed >>> shift(i)) & 0xf;
+  }
+
+  /**
+   * Multiply two packed rankings.
+   *
+   * @param lhs a packed ranking
+   * @param rhs another packed ranking
+   * @return the packed ranking of {@code lhs} composed with {@code rhs}
+   * @see #compose(SmallPermutation)
+   */
+  public static long compose(long lhs, long rhs) {
+    long result = 0;
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      int j = (int) (rhs >>> shift) & 0xf;
+      result |= ((lhs >>> shift(j)) & 0xf) << shift;
+    }
+    return result;
+  }
+
+  /**
+   * Calculate the inverse of a packed ranking.
+   *
+   * @param packed a packed ranking
+   * @return the packed inverse ranking
+   * @see #invert()
+   */
+  public static long invert(long packed) {
+    long result = 0;
+    for (int i = 0; i < MAX_DEGREE; i++)
+      result |= (long) i << shift(apply(packed, i));
+    return result;
+  }
+
+  /**
+   * Raise a packed ranking to the {@code n}th power.
+   *
+   * @param packed a packed ranking
+   * @param n any number
+   * @return the packed ranking of the {@code n}th power
+   * @see #pow(long)
+   */
+  public static long pow(long packed, long n) {
+    long k = Math.floorMod(n, EXPONENT);
+    long result = IDENTITY_BITS;
+    long square = packed;
+    while (k != 0) {
+      if ((k & 1) != 0) {
+        result = compose(result, square);
+      }
+      k >>>= 1;
+      if (k != 0) {
+        square = compose(square, square);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Move an index.
+   *
+   * @param i a non-negative number
+   * @return the image of {@code i}
+   * @exception java.lang.IllegalArgumentException if {@code i} is negative
+   */
+  public int apply(int i) {
+    if (i < 0) {
+      ArrayUtil.negativeFailure();
+    }
+    if (i >= MAX_DEGREE) {
+      return i;
+    }
+    return apply(ranking, i);
+  }
+
+  /**
+   * Permutation composition. The following is true for all non-negative numbers {@code i}:
+   * <pre><code>
+   *   this.apply(other.apply(i)) == this.compose(other).apply(i)
+   * </code></pre>
+   *
+   * @param other a permutation
+   * @return the product of this instance and {@code other}
+   */
+  public SmallPermutation compose(SmallPermutation other) {
+    return new SmallPermutation(compose(ranking, other.ranking));
+  }
+
+  /**
+   * Inverts this permutation.
+   *
+   * @return the inverse of this permutation
+   */
+  public SmallPermutation invert() {
+    return new SmallPermutation(invert(ranking));
+  }
+
+  /**
+   * Raise this permutation to the {@code n}th power.
+   * If {@code n} is negative, the inverse is raised to the power {@code -n}.
+   *
+   * @param n any number
+   * @return the {@code n}th power of this permutation
+   */
+  public SmallPermutation pow(long n) {
+    return new SmallPermutation(pow(ranking, n));
+  }
+
+  /**
+   * Determine whether this permutation moves any index.
+   *
+   * @return true if this is the identity
+   */
+  public boolean isIdentity() {
+    return ranking == IDENTITY_BITS;
+  }
+
+  /**
+   * Lexicographic comparison of the rankings.
+   *
+   * @param other a permutation
+   * @return comparison result
+   */
+  @Override
+  public int compareTo(SmallPermutation other) {
+    return Long.compareUnsigned(ranking, other.ranking);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    return ranking == ((SmallPermutation) o).ranking;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(ranking);
+  }
+
+  /**
+   * Print this permutation using cycle notation.
+   *
+   * @return a string
+   */
+  @Override
+  public String toString() {
+    return toPermutation().toString();
+  }
+}
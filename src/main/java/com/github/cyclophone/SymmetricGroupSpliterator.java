@@ -0,0 +1,99 @@
+package com.github.cyclophone;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A spliterator over the rankings of length {@code n} in lexicographic order,
+ * restricted to a range of lexicographic ranks.
+ * It splits by rank: each half is seeded by unranking its first element,
+ * and then advanced in place by {@link Rankings#nextPermutation(int[])}.
+ * This requires {@code n <= 20}, so that all ranks fit in a {@code long}.
+ *
+ * @param <E> element type
+ */
+final class SymmetricGroupSpliterator<E> implements Spliterator<E> {
+
+  private static final int CHARACTERISTICS = SIZED | SUBSIZED | ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+
+  private final int n;
+  private final Function<int[], E> mapper;
+
+  // rank of the next element
+  private long from;
+  // rank limit, exclusive
+  private final long to;
+
+  // null before the first element; otherwise the ranking of rank from - 1
+  private int[] current;
+
+  /**
+   * @param n a number between {@code 0} and {@link Rankings#MAX_LONG_RANK_DEGREE}
+   * @param from first rank, inclusive
+   * @param to last rank, exclusive
+   * @param mapper a function that creates an element from a ranking;
+   *               the ranking is reused and must not be retained by the mapper
+   */
+  SymmetricGroupSpliterator(int n, long from, long to, Function<int[], E> mapper) {
+    this(n, from, to, mapper, null);
+  }
+
+  private SymmetricGroupSpliterator(int n, long from, long to, Function<int[], E> mapper, int[] current) {
+    this.n = n;
+    this.from = from;
+    this.to = to;
+    this.mapper = mapper;
+    this.current = current;
+  }
+
+  private int[] next() {
+    if (current == null) {
+      current = new int[n];
+      Rankings.lexUnrank(from, current, new int[n + 1]);
+    } else {
+      Rankings.nextPermutation(current);
+    }
+    from++;
+    return current;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super E> action) {
+    if (from >= to) {
+      return false;
+    }
+    action.accept(mapper.apply(next()));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super E> action) {
+    while (from < to)
+      action.accept(mapper.apply(next()));
+  }
+
+  @Override
+  public Spliterator<E> trySplit() {
+    long size = to - from;
+    if (size < 2) {
+      return null;
+    }
+    long mid = from + size / 2;
+    // the prefix continues where this one stopped; this one will be seeded at mid
+    Spliterator<E> prefix = new SymmetricGroupSpliterator<>(n, from, mid, mapper, current);
+    from = mid;
+    current = null;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return to - from;
+  }
+
+  @Override
+  public int characteristics() {
+    return CHARACTERISTICS;
+  }
+}
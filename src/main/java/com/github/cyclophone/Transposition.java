@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static com.github.cyclophone.ArrayUtil.checkLength;
 
@@ -79,10 +80,11 @@ final class Transposition implements Serializable {
   static Transposition random(TranspositionFactory factory, int length) {
     if (length < 2)
       throw new IllegalArgumentException("minimum length of a transposition is 2");
-    int j = (int) (length * Math.random());
-    int k = (int) (length * Math.random());
-    if (j == k)
-      k = j == 0 ? 1 : j - 1;
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int j = random.nextInt(length);
+    int k = random.nextInt(length - 1);
+    if (k >= j)
+      k++;
     return factory.swap(j, k);
   }
 
@@ -22,4 +22,29 @@ class CyclesTest {
     p.unclobber(a);
     assertArrayEquals(ArrayUtil.range(100), a);
   }
+
+  @Test
+  void testApplyIndexed() {
+    for (int length : new int[]{3, 10, 1000}) {
+      Permutation p = RandomPermutation.randomPermutation(length);
+      Cycles cycles = p.toCycles();
+      int[] ranking = Rankings.fill(p.getRanking(), length);
+      for (int i = -1; i < length + 1; i++) {
+        int expected = i >= 0 && i < length ? ranking[i] : i;
+        assertEquals(expected, cycles.apply(i));
+        assertEquals(i, cycles.unApply(expected));
+      }
+    }
+  }
+
+  @Test
+  void testApplyOverlapping() {
+    Cycles cycles = Cycles.create(new int[][]{ArrayUtil.range(20), {0, 1}, ArrayUtil.range(5, 25)});
+    int[] a = ArrayUtil.range(25);
+    cycles.clobber(a);
+    for (int i = 0; i < 25; i++) {
+      assertEquals(i, a[cycles.apply(i)]);
+      assertEquals(i, cycles.unApply(cycles.apply(i)));
+    }
+  }
 }
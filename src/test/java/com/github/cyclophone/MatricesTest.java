@@ -0,0 +1,72 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class MatricesTest {
+
+  private static double[] matrix(int rows, int cols) {
+    double[] data = new double[rows * cols];
+    for (int i = 0; i < data.length; i++)
+      data[i] = i;
+    return data;
+  }
+
+  @Test
+  void testRowsColumnsSymmetric() {
+    int[][] shapes = {{0, 3}, {1, 1}, {5, 7}, {40, 3}, {300, 400}, {3, 30000}};
+    for (int[] shape : shapes) {
+      int rows = shape[0];
+      int cols = shape[1];
+      double[] data = matrix(rows, cols);
+      Permutation p = randomPermutation(Math.max(0, rows - 1));
+      Permutation q = randomPermutation(cols);
+      double[] byRows = data.clone();
+      p.applyToRows(byRows, rows, cols);
+      double[] byColumns = data.clone();
+      q.applyToColumns(byColumns, rows, cols);
+      for (int i = 0; i < rows; i++) {
+        for (int j = 0; j < cols; j++) {
+          Assertions.assertEquals(data[i * cols + j], byRows[Apply.apply(p, i) * cols + j]);
+          Assertions.assertEquals(data[i * cols + j], byColumns[i * cols + Apply.apply(q, j)]);
+        }
+      }
+      p.invert().applyToRows(byRows, rows, cols);
+      assertArrayEquals(data, byRows);
+    }
+  }
+
+  @Test
+  void testSymmetric() {
+    for (int size : new int[]{0, 4, 100, 600}) {
+      double[] data = matrix(size, size);
+      long[] longs = new long[data.length];
+      for (int i = 0; i < data.length; i++)
+        longs[i] = i;
+      Permutation p = randomPermutation(size);
+      double[] result = data.clone();
+      p.applySymmetric(result, size);
+      p.applySymmetric(longs, size);
+      for (int i = 0; i < size; i++) {
+        for (int j = 0; j < size; j++) {
+          int k = Apply.apply(p, i) * size + Apply.apply(p, j);
+          Assertions.assertEquals(data[i * size + j], result[k]);
+          Assertions.assertEquals(i * size + j, longs[k]);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testInvalid() {
+    Permutation p = Permutation.cycle(1, 3);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> p.applyToRows(new double[6], 2, 3));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> p.applyToColumns(new int[6], 3, 2));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> p.applyToRows(new float[5], 3, 2));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> p.applySymmetric(new long[8], 3));
+    p.applyToRows(new double[6], 3, 2);
+  }
+}
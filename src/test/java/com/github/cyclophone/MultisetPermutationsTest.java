@@ -0,0 +1,103 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultisetPermutationsTest {
+
+  @Test
+  void testInts() {
+    int[] values = {3, 1, 3, 1, 1, 7};
+    // 6! / (3! * 2!) = 60
+    Set<List<Integer>> expected = new LinkedHashSet<>();
+    Permutation.symmetricGroup(6).forEach(p -> expected.add(p.apply(values)));
+    List<List<Integer>> visited = new ArrayList<>();
+    MultisetPermutations.forEach(values, a -> visited.add(Arrays.stream(a).boxed().collect(Collectors.toList())));
+    assertEquals(60, visited.size());
+    assertEquals(expected, new LinkedHashSet<>(visited));
+    for (int i = 1; i < visited.size(); i++)
+      assertEquals(-1, Integer.signum(compare(visited.get(i - 1), visited.get(i))));
+    List<int[]> streamed = MultisetPermutations.stream(values).parallel().collect(Collectors.toList());
+    assertEquals(visited.size(), streamed.size());
+    for (int i = 0; i < streamed.size(); i++)
+      assertEquals(visited.get(i), Arrays.stream(streamed.get(i)).boxed().collect(Collectors.toList()));
+    assertEquals(BigInteger.valueOf(60), MultisetPermutations.count(values));
+    assertArrayEquals(new int[]{3, 1, 3, 1, 1, 7}, values);
+  }
+
+  @Test
+  void testLongs() {
+    long[] values = {5, -2, 5, 5};
+    List<long[]> visited = new ArrayList<>();
+    MultisetPermutations.forEach(values, a -> visited.add(a.clone()));
+    List<long[]> streamed = MultisetPermutations.stream(values).collect(Collectors.toList());
+    assertEquals(4, visited.size());
+    assertArrayEquals(new long[]{-2, 5, 5, 5}, visited.get(0));
+    assertArrayEquals(new long[]{5, 5, 5, -2}, visited.get(3));
+    for (int i = 0; i < visited.size(); i++)
+      assertArrayEquals(visited.get(i), streamed.get(i));
+  }
+
+  @Test
+  void testObjects() {
+    String[] values = {"a", "B", "A", "b", "c"};
+    Comparator<String> comparator = String.CASE_INSENSITIVE_ORDER;
+    List<String> visited = new ArrayList<>();
+    MultisetPermutations.forEach(values, comparator, a -> visited.add(String.join("", a).toLowerCase()));
+    List<String> streamed = MultisetPermutations.stream(values, comparator).parallel()
+        .map(a -> String.join("", a).toLowerCase())
+        .collect(Collectors.toList());
+    // 5! / (2! * 2!) = 30
+    assertEquals(30, visited.size());
+    assertEquals(30, new LinkedHashSet<>(visited).size());
+    assertEquals(visited, streamed);
+    assertEquals(BigInteger.valueOf(30), MultisetPermutations.count(values, comparator));
+    // each result contains the original objects, and equal objects keep their order
+    List<String[]> arrays = new ArrayList<>();
+    MultisetPermutations.forEach(values, comparator, a -> arrays.add(a.clone()));
+    List<String[]> streamedArrays = MultisetPermutations.stream(values, comparator).collect(Collectors.toList());
+    for (int i = 0; i < arrays.size(); i++) {
+      assertArrayEquals(arrays.get(i), streamedArrays.get(i));
+      String joined = String.join("", arrays.get(i));
+      String[] sorted = arrays.get(i).clone();
+      Arrays.sort(sorted);
+      assertArrayEquals(new String[]{"A", "B", "a", "b", "c"}, sorted);
+      assertTrue(joined.indexOf('a') < joined.indexOf('A'));
+      assertTrue(joined.indexOf('B') < joined.indexOf('b'));
+    }
+  }
+
+  @Test
+  void testLarge() {
+    int[] values = new int[60];
+    for (int i = 0; i < values.length; i++)
+      values[i] = i % 3;
+    // 60! / (20!)^3 does not fit in a long
+    BigInteger count = MultisetPermutations.count(values);
+    assertEquals(Rankings.factorial(60).divide(Rankings.factorial(20).pow(3)), count);
+    assertEquals(5, MultisetPermutations.stream(values).limit(5).count());
+    assertEquals(1, MultisetPermutations.stream(new int[0]).count());
+  }
+
+  private static int compare(List<Integer> a, List<Integer> b) {
+    for (int i = 0; i < a.size(); i++) {
+      int c = Integer.compare(a.get(i), b.get(i));
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+}
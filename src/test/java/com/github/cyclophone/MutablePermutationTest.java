@@ -0,0 +1,103 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.github.cyclophone.Equals.assertPermutationEquals;
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MutablePermutationTest {
+
+  private static final int[] DEGREES = {0, 1, 7, 300, 70000};
+
+  @Test
+  void testCompose() {
+    for (int degree : DEGREES) {
+      Permutation a = randomPermutation(degree);
+      Permutation b = randomPermutation(degree / 2);
+      MutablePermutation dest = new MutablePermutation(degree);
+      MutablePermutation.composeInto(a, b, dest);
+      assertPermutationEquals(a.compose(b), dest.toPermutation());
+      MutablePermutation ma = MutablePermutation.of(a, degree);
+      MutablePermutation mb = MutablePermutation.of(b, degree);
+      MutablePermutation.composeInto(ma, mb, ma);
+      assertPermutationEquals(a.compose(b), ma.toPermutation());
+      MutablePermutation.composeInto(mb, mb, mb);
+      assertPermutationEquals(b.compose(b), mb.toPermutation());
+    }
+  }
+
+  @Test
+  void testInvert() {
+    for (int degree : DEGREES) {
+      Permutation a = randomPermutation(degree);
+      MutablePermutation dest = new MutablePermutation(degree);
+      MutablePermutation.invertInto(a, dest);
+      assertPermutationEquals(a.invert(), dest.toPermutation());
+      MutablePermutation.invertInto(dest, dest);
+      assertPermutationEquals(a, dest.toPermutation());
+      assertPermutationEquals(a.invert(), dest.invertInPlace().toPermutation());
+    }
+  }
+
+  @Test
+  void testMultiplyInPlace() {
+    for (int degree : DEGREES) {
+      Permutation a = randomPermutation(degree);
+      Permutation p = randomPermutation(degree);
+      assertPermutationEquals(p.compose(a), MutablePermutation.of(a, degree).leftMultiplyInPlace(p).toPermutation());
+      assertPermutationEquals(a.compose(p), MutablePermutation.of(a, degree).rightMultiplyInPlace(p).toPermutation());
+      assertPermutationEquals(a.conjugationBy(p), MutablePermutation.of(a, degree).conjugateInPlace(p).toPermutation());
+      MutablePermutation mp = MutablePermutation.of(p, degree);
+      assertPermutationEquals(p.compose(a), MutablePermutation.of(a, degree).leftMultiplyInPlace(mp).toPermutation());
+      assertPermutationEquals(a.compose(p), MutablePermutation.of(a, degree).rightMultiplyInPlace(mp).toPermutation());
+      assertPermutationEquals(a.conjugationBy(p), MutablePermutation.of(a, degree).conjugateInPlace(mp).toPermutation());
+    }
+  }
+
+  @Test
+  void testFreeze() {
+    Permutation a = randomPermutation(10);
+    Permutation p = randomPermutation(10);
+    MutablePermutation m = MutablePermutation.of(a, 10);
+    Permutation frozen = m.freeze();
+    assertPermutationEquals(a, frozen);
+    m.rightMultiplyInPlace(p);
+    m.leftMultiplyInPlace(p);
+    assertPermutationEquals(a, frozen);
+    Permutation frozen2 = m.freeze();
+    m.setIdentity();
+    assertPermutationEquals(p.compose(a).compose(p), frozen2);
+    assertTrue(m.freeze().isIdentity());
+    // permutations derived from frozen ones are packed again
+    assertTrue(frozen.invert().packed() instanceof byte[]);
+    assertTrue(frozen.compose(frozen2).packed() instanceof byte[]);
+  }
+
+  @Test
+  void testTooLong() {
+    Assertions.assertThrows(IllegalArgumentException.class, () ->
+        new MutablePermutation(3).rightMultiplyInPlace(Permutation.cycle(1, 4)));
+  }
+
+  @Test
+  void testNextPrevious() {
+    MutablePermutation p = new MutablePermutation(5);
+    for (long rank = 0; rank < 120; rank++) {
+      assertEquals(rank, p.toPermutation().rank(5));
+      Permutation frozen = p.freeze();
+      assertEquals(rank < 119, p.nextInPlace());
+      if (rank < 119) {
+        assertTrue(p.toPermutation().compareTo(frozen) > 0);
+        assertTrue(p.previousInPlace());
+        assertPermutationEquals(frozen, p.toPermutation());
+        p.nextInPlace();
+      }
+    }
+    assertFalse(p.nextInPlace());
+    assertFalse(new MutablePermutation(5).previousInPlace());
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
+import static com.github.cyclophone.RandomPermutation.randomRanking;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackedRankingsTest {
+
+  private static final int[] LENGTHS = {1, 2, 255, 256, 257, 1000, 65536, 65537, 70000};
+
+  @Test
+  void testPack() {
+    assertTrue(PackedRankings.pack(randomRanking(256), 256) instanceof byte[]);
+    assertTrue(PackedRankings.pack(randomRanking(257), 257) instanceof short[]);
+    assertTrue(PackedRankings.pack(randomRanking(65536), 65536) instanceof short[]);
+    assertTrue(PackedRankings.pack(randomRanking(65537), 65537) instanceof int[]);
+    for (int length : LENGTHS) {
+      int[] ranking = randomRanking(length);
+      assertArrayEquals(ranking, PackedRankings.ints(PackedRankings.pack(ranking, length)));
+    }
+  }
+
+  @Test
+  void testMixedWidths() {
+    for (int m : LENGTHS) {
+      for (int n : LENGTHS) {
+        Permutation p = randomPermutation(m);
+        Permutation q = randomPermutation(n);
+        int[] expected = Rankings.comp(Rankings.fill(p.getRanking(), Math.max(m, n)),
+            Rankings.fill(q.getRanking(), Math.max(m, n)));
+        assertArrayEquals(expected, Rankings.fill(p.compose(q).getRanking(), Math.max(m, n)));
+      }
+    }
+  }
+
+  @Test
+  void testInvert() {
+    for (int length : LENGTHS) {
+      Permutation p = randomPermutation(length);
+      assertArrayEquals(Rankings.invert(p.getRanking()), p.invert().getRanking());
+      assertTrue(p.compose(p.invert()).isIdentity());
+    }
+  }
+
+  @Test
+  void testTrim() {
+    int[] ranking = {1, 0, 2, 3};
+    assertArrayEquals(new byte[]{1, 0}, (byte[]) PackedRankings.trim(ranking));
+    int[] big = Rankings.fill(new int[]{1, 0}, 70000);
+    assertArrayEquals(new byte[]{1, 0}, (byte[]) PackedRankings.trim(big));
+  }
+
+  @Test
+  void testEqualsAcrossWidths() {
+    int[] ranking = randomRanking(200);
+    Object packed = PackedRankings.pack(ranking, ranking.length);
+    assertTrue(PackedRankings.equals(ranking, packed));
+    assertEquals(0, PackedRankings.compare(packed, ranking));
+    assertEquals(Arrays.hashCode(ranking), PackedRankings.hashCode(packed));
+  }
+}
@@ -0,0 +1,102 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.github.cyclophone.Equals.assertPermutationEquals;
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PermutationArenaTest {
+
+  @Test
+  void testComposeInvert() {
+    for (int degree : new int[]{5, 300, 70000}) {
+      PermutationArena arena = PermutationArena.allocateDirect(degree, 1);
+      Permutation p = randomPermutation(degree);
+      Permutation q = randomPermutation(degree - 1);
+      int i = arena.add(p);
+      int j = arena.add(q);
+      arena.compose(i, j, arena.size());
+      arena.invert(i, arena.size());
+      assertEquals(4, arena.size());
+      assertPermutationEquals(p, arena.get(i));
+      assertPermutationEquals(q, arena.get(j));
+      assertPermutationEquals(p.compose(q), arena.get(2));
+      assertPermutationEquals(p.invert(), arena.get(3));
+      arena.compose(3, 0, 1);
+      assertPermutationEquals(Permutation.identity(), arena.get(1));
+    }
+  }
+
+  @Test
+  void testSortDedup() {
+    List<Permutation> s4 = Permutation.symmetricGroup(4).collect(Collectors.toList());
+    PermutationArena arena = PermutationArena.allocateDirect(4, 0);
+    for (int __ = 0; __ < 3; __++)
+      for (int k = s4.size() - 1; k >= 0; k--)
+        arena.add(s4.get(k));
+    arena.sort();
+    assertEquals(24, arena.dedup());
+    List<Permutation> sorted = new ArrayList<>(s4);
+    sorted.sort(Comparator.comparing(p -> p.print(4)));
+    for (int i = 0; i < arena.size(); i++) {
+      assertPermutationEquals(sorted.get(i), arena.get(i));
+      if (i > 0) {
+        Assertions.assertTrue(arena.compare(i - 1, i) < 0);
+      }
+    }
+  }
+
+  @Test
+  void testMapped() throws IOException {
+    Path file = Files.createTempFile("arena", ".bin");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      PermutationArena arena = PermutationArena.map(channel, 0, 10, 2);
+      Permutation p = randomPermutation(10);
+      arena.add(p);
+      arena.invert(0, 1);
+      assertPermutationEquals(p.invert(), arena.get(1));
+      Assertions.assertThrows(IllegalStateException.class, arena::addIdentity);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  void testMapExisting() throws IOException {
+    Path file = Files.createTempFile("arena", ".bin");
+    try {
+      Permutation p = randomPermutation(300);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        PermutationArena arena = PermutationArena.map(channel, 0, 300, 3);
+        arena.add(p);
+        arena.invert(0, 1);
+      }
+      // two bytes per element, little-endian
+      byte[] bytes = Files.readAllBytes(file);
+      assertEquals(Apply.apply(p, 1), (bytes[2] & 0xff) | (bytes[3] & 0xff) << 8);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        PermutationArena arena = PermutationArena.map(channel, 0, 300, 3, 2);
+        assertEquals(2, arena.size());
+        assertPermutationEquals(p, arena.get(0));
+        assertPermutationEquals(p.invert(), arena.get(1));
+        arena.addIdentity();
+        Assertions.assertThrows(IllegalStateException.class, arena::addIdentity);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PermutationArena.map(channel, 0, 300, 3, 4));
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
@@ -3,11 +3,18 @@ package com.github.cyclophone;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
 import java.util.stream.Collectors;
 
 import static com.github.cyclophone.Apply.apply;
@@ -19,6 +26,7 @@ import static com.github.cyclophone.Permutation.define0;
 import static com.github.cyclophone.Permutation.identity;
 import static com.github.cyclophone.Product.product;
 import static com.github.cyclophone.RandomPermutation.randomNumbers;
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
 import static com.github.cyclophone.Reverse.reverse;
 import static com.github.cyclophone.Reverse.reverses;
 import static com.github.cyclophone.Shift.shift;
@@ -156,6 +164,36 @@ class PermutationTest {
         apply(product(p, p.invert()), TestUtil.symbols(3)));
   }
 
+  @Test
+  void testPowLong() {
+    for (int __ = 0; __ < 20; __++) {
+      Permutation p = RandomPermutation.randomPermutation(30);
+      Permutation expected = Permutation.identity();
+      for (int n = 0; n <= 30; n++) {
+        assertPermutationEquals(expected, p.pow((long) n));
+        assertPermutationEquals(expected.invert(), p.pow(-n));
+        assertPermutationEquals(expected, p.pow(BigInteger.valueOf(n)));
+        assertPermutationEquals(expected, MutablePermutation.of(p, 30).powInPlace(n).toPermutation());
+        assertPermutationEquals(expected.invert(), MutablePermutation.of(p, 30).powInPlace(-n).toPermutation());
+        expected = expected.compose(p);
+      }
+    }
+  }
+
+  @Test
+  void testPowHuge() {
+    Permutation p = cycle(1, 2, 3).compose(cycle(4, 5, 6, 7, 8)).compose(cycle(9, 10));
+    long k = 656100000000L + 7; // 30^8 + 7 is 1 mod 3, 2 mod 5 and 1 mod 2
+    Permutation expected = cycle(1, 2, 3).compose(cycle(4, 5, 6, 7, 8).pow(2)).compose(cycle(9, 10));
+    assertPermutationEquals(expected, p.pow(k));
+    assertTrue(p.pow(k).packed() instanceof byte[]);
+    assertPermutationEquals(expected, p.pow(BigInteger.valueOf(30).pow(40).add(BigInteger.valueOf(7))));
+    assertPermutationEquals(expected, MutablePermutation.of(p, 10).powInPlace(k).toPermutation());
+    // -2^63 is 1 mod 3, 2 mod 5 and 0 mod 2
+    assertPermutationEquals(cycle(1, 2, 3).compose(cycle(4, 5, 6, 7, 8).pow(2)), p.pow(Long.MIN_VALUE));
+    assertPermutationEquals(p.pow(Long.MIN_VALUE), MutablePermutation.of(p, 10).powInPlace(Long.MIN_VALUE).toPermutation());
+  }
+
   @Test
   void testIdentity() {
     assertTrue(Permutation.identity().isIdentity());
@@ -356,6 +394,44 @@ class PermutationTest {
     assertEquals("14235", apply(move(3, 1), "12345"));
   }
 
+  @Test
+  void testOrder() {
+    for (Permutation p : symmetricGroup(6).collect(Collectors.toList())) {
+      int expected = 1;
+      while (!p.pow(expected).isIdentity())
+        expected++;
+      assertEquals(expected, p.order());
+      assertTrue(p.orderDivides(expected));
+      assertTrue(p.orderDivides(-2 * expected));
+      assertTrue(p.orderDivides(0));
+      if (expected > 1) {
+        assertFalse(p.orderDivides(expected - 1));
+      }
+    }
+  }
+
+  @Test
+  void testOrderLarge() {
+    // disjoint cycles of all prime lengths up to 100
+    int[] primes = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97};
+    int length = Arrays.stream(primes).sum();
+    int[] ranking = new int[length];
+    BigInteger expected = BigInteger.ONE;
+    int offset = 0;
+    for (int prime : primes) {
+      for (int i = 0; i < prime; i++)
+        ranking[offset + i] = offset + (i + 1) % prime;
+      offset += prime;
+      expected = expected.multiply(BigInteger.valueOf(prime));
+    }
+    Permutation p = define0(ranking);
+    assertEquals(expected, p.orderExact());
+    Assertions.assertThrows(ArithmeticException.class, p::order);
+    assertTrue(p.pow(expected).isIdentity());
+    assertFalse(p.orderDivides(Long.MAX_VALUE));
+    assertEquals(BigInteger.ONE, identity().orderExact());
+  }
+
   /* various assertions about Sym(5) */
   @Test
   void testCyclesAndTranspositions() {
@@ -580,5 +656,333 @@ class PermutationTest {
     assertTrue(symmetricGroup(n).allMatch(p -> p.length() <= n));
     assertEquals(362880, symmetricGroup(n).count());
   }
-}
 
+  @Test
+  void testRank() {
+    List<Permutation> s5 = symmetricGroup(5).sorted().collect(Collectors.toList());
+    for (int i = 0; i < s5.size(); i++) {
+      assertEquals(i, s5.get(i).rank(5));
+      assertEquals(BigInteger.valueOf(i), s5.get(i).rankExact(5));
+      assertPermutationEquals(s5.get(i), Permutation.unrank(5, i));
+    }
+    assertEquals(0, identity().rank(0));
+    int[] reversed = new int[20];
+    for (int i = 0; i < reversed.length; i++)
+      reversed[i] = reversed.length - i - 1;
+    assertEquals(2432902008176639999L, define0(reversed).rank(20));
+    assertTrue(Permutation.unrank(20, 2432902008176639999L).packed() instanceof byte[]);
+    assertTrue(Permutation.unrank(20, BigInteger.valueOf(2432902008176639999L)).packed() instanceof byte[]);
+    assertTrue(Permutation.unrankAll(20, 2432902008176639999L)[0].packed() instanceof byte[]);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> cycle(1, 6).rank(5));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> identity().rank(21));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Permutation.unrank(5, 120));
+  }
+
+  @Test
+  void testRankRandom() {
+    for (int __ = 0; __ < 100; __++) {
+      Permutation p = randomPermutation(20);
+      Permutation q = randomPermutation(15);
+      assertPermutationEquals(p, Permutation.unrank(20, p.rank(20)));
+      assertEquals(Long.signum(p.rank(20) - q.rank(20)), Integer.signum(p.compareTo(q)));
+      assertEquals(BigInteger.valueOf(p.rank(20)), p.rankExact(20));
+      Permutation r = randomPermutation(300);
+      assertPermutationEquals(r, Permutation.unrank(300, r.rankExact(300)));
+      assertPermutationEquals(r, Permutation.unrank(400, r.rankExact(400)));
+    }
+  }
+
+  @Test
+  void testRankAll() {
+    Permutation[] permutations = new Permutation[50];
+    for (int i = 0; i < permutations.length; i++)
+      permutations[i] = randomPermutation(12);
+    long[] ranks = Permutation.rankAll(12, permutations);
+    Permutation[] unranked = Permutation.unrankAll(12, ranks);
+    for (int i = 0; i < permutations.length; i++) {
+      assertEquals(permutations[i].rank(12), ranks[i]);
+      assertPermutationEquals(permutations[i], unranked[i]);
+    }
+  }
+
+  @Test
+  void testForEachPermutation() {
+    for (int n = 0; n <= 7; n++) {
+      Set<Permutation> seen = new HashSet<>();
+      int[] previous = new int[n];
+      Permutation.forEachPermutation(n, (ranking, i, j) -> {
+        if (i == -1) {
+          assertTrue(seen.isEmpty());
+          assertEquals(-1, j);
+        } else {
+          assertTrue(i < j);
+          int tmp = previous[i];
+          previous[i] = previous[j];
+          previous[j] = tmp;
+          assertArrayEquals(previous, ranking);
+        }
+        System.arraycopy(ranking, 0, previous, 0, ranking.length);
+        assertTrue(seen.add(define0(ranking)));
+      });
+      assertEquals(symmetricGroup(n).count(), seen.size());
+    }
+  }
+
+  @Test
+  void testSymmetricGroupParallel() {
+    List<Permutation> sequential = Permutation.symmetricGroup(8).collect(Collectors.toList());
+    List<Permutation> parallel = Permutation.symmetricGroup(8).parallel().collect(Collectors.toList());
+    assertEquals(sequential, parallel);
+    for (int i = 1; i < sequential.size(); i++)
+      assertTrue(sequential.get(i - 1).compareTo(sequential.get(i)) < 0);
+    assertEquals(2432902008176640000L, Permutation.symmetricGroup(20).spliterator().getExactSizeIfKnown());
+  }
+
+  @Test
+  void testSymmetricGroupSplitAfterAdvance() {
+    Spliterator<Permutation> spliterator = Permutation.symmetricGroup(5).spliterator();
+    List<Permutation> result = new ArrayList<>();
+    for (int i = 0; i < 7; i++)
+      assertTrue(spliterator.tryAdvance(result::add));
+    Spliterator<Permutation> prefix = spliterator.trySplit();
+    assertEquals(113, prefix.estimateSize() + spliterator.estimateSize());
+    prefix.forEachRemaining(result::add);
+    spliterator.forEachRemaining(result::add);
+    assertEquals(symmetricGroup(5).sorted().collect(Collectors.toList()), result);
+  }
+
+  @Test
+  void testSymmetricGroupUnsized() {
+    List<Permutation> first = Permutation.symmetricGroup(21).limit(3).collect(Collectors.toList());
+    assertEquals(Arrays.asList(identity(), cycle(20, 21), cycle(19, 20)), first);
+  }
+
+  @Test
+  void testSymmetricGroupRange() {
+    List<Permutation> s6 = Permutation.symmetricGroup(6).collect(Collectors.toList());
+    assertEquals(s6.subList(100, 400), Permutation.symmetricGroup(6, 100, 400).collect(Collectors.toList()));
+    assertEquals(0, Permutation.symmetricGroup(6, 720, 720).count());
+    Permutation p = randomPermutation(20);
+    long rank = p.rank(20);
+    assertEquals(Collections.singletonList(p), Permutation.symmetricGroup(20, rank, rank + 1).collect(Collectors.toList()));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Permutation.symmetricGroup(6, 0, 721));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Permutation.symmetricGroup(6, 2, 1));
+  }
+
+  @Test
+  void testOfCycleType() {
+    int[][] types = {{}, {1}, {3, 2}, {2, 2, 1, 1}, {4, 1, 1, 1}, {2, 3, 2}, {1, 1, 1, 1, 1, 1, 1}, {7}};
+    for (int[] type : types) {
+      int n = Arrays.stream(type).sum();
+      List<Integer> shape = Arrays.stream(type).boxed().sorted().collect(Collectors.toList());
+      Set<Permutation> expected = symmetricGroup(n)
+          .filter(p -> cycleLengths(p, n).equals(shape))
+          .collect(Collectors.toSet());
+      List<Permutation> actual = Permutation.ofCycleType(type).collect(Collectors.toList());
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected, new HashSet<>(actual));
+      assertEquals(BigInteger.valueOf(expected.size()), Permutation.cycleTypeCount(type));
+      assertEquals(actual, Permutation.ofCycleType(type).parallel().collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  void testOfCycleTypeLarge() {
+    // 30! / 30 does not fit in a long
+    assertEquals(Rankings.factorial(29), Permutation.cycleTypeCount(30));
+    List<Permutation> cycles = Permutation.ofCycleType(30).limit(100).collect(Collectors.toList());
+    assertEquals(100, new HashSet<>(cycles).size());
+    assertTrue(cycles.stream().allMatch(p -> p.getCycles().length == 1 && p.length() == 30));
+    assertEquals(499500, Permutation.ofCycleType(rangeOfOnes(998, 2)).parallel().count());
+  }
+
+  @Test
+  void testDerangementsInvolutions() {
+    // A000166, A000085
+    long[] derangements = {1, 0, 1, 2, 9, 44, 265, 1854};
+    long[] involutions = {1, 1, 2, 4, 10, 26, 76, 232};
+    for (int n = 0; n < derangements.length; n++) {
+      assertEquals(derangements[n], Permutation.derangements(n).distinct().count());
+      assertEquals(involutions[n], Permutation.involutions(n).distinct().count());
+      int degree = n;
+      assertTrue(Permutation.derangements(n).allMatch(p -> p.length() == degree && fixedPoints(p, degree) == 0));
+      assertTrue(Permutation.involutions(n).allMatch(p -> p.compose(p).isIdentity()));
+    }
+  }
+
+  private static List<Integer> cycleLengths(Permutation p, int n) {
+    List<Integer> lengths = new ArrayList<>();
+    for (int[] cycle : p.getCycles())
+      lengths.add(cycle.length);
+    for (int i = 0; i < fixedPoints(p, n); i++)
+      lengths.add(1);
+    Collections.sort(lengths);
+    return lengths;
+  }
+
+  private static int fixedPoints(Permutation p, int n) {
+    int result = n;
+    for (int[] cycle : p.getCycles())
+      result -= cycle.length;
+    return result;
+  }
+
+  private static int[] rangeOfOnes(int ones, int... other) {
+    int[] result = Arrays.copyOf(other, other.length + ones);
+    Arrays.fill(result, other.length, result.length, 1);
+    return result;
+  }
+
+  @Test
+  void testApplyInPlace() {
+    for (int length : new int[]{0, 1, 5, 300, 70000}) {
+      for (boolean constantMemory : new boolean[]{false, true}) {
+        Permutation p = randomPermutation(length);
+        int extra = length + 3;
+        Integer[] boxed = new Integer[extra];
+        int[] ints = new int[extra];
+        long[] longs = new long[extra];
+        double[] doubles = new double[extra];
+        float[] floats = new float[extra];
+        short[] shorts = new short[extra];
+        char[] chars = new char[extra];
+        byte[] bytes = new byte[extra];
+        for (int i = 0; i < extra; i++) {
+          boxed[i] = i;
+          ints[i] = i;
+          longs[i] = i;
+          doubles[i] = i;
+          floats[i] = i;
+          shorts[i] = (short) i;
+          chars[i] = (char) i;
+          bytes[i] = (byte) i;
+        }
+        Integer[] expected = Apply.apply(p, boxed);
+        p.applyInPlace(ints, constantMemory);
+        p.applyInPlace(longs, constantMemory);
+        p.applyInPlace(doubles, constantMemory);
+        p.applyInPlace(floats, constantMemory);
+        p.applyInPlace(shorts, constantMemory);
+        p.applyInPlace(chars, constantMemory);
+        p.applyInPlace(bytes, constantMemory);
+        Integer[] objects = boxed.clone();
+        p.applyInPlace(objects, constantMemory);
+        assertArrayEquals(expected, objects);
+        for (int i = 0; i < extra; i++) {
+          int e = expected[i];
+          assertEquals(e, ints[i]);
+          assertEquals(e, longs[i]);
+          assertEquals(e, doubles[i]);
+          assertEquals(e, floats[i]);
+          assertEquals((short) e, shorts[i]);
+          assertEquals((char) e, chars[i]);
+          assertEquals((byte) e, bytes[i]);
+        }
+        p.unapplyInPlace(ints, constantMemory);
+        p.unapplyInPlace(longs, constantMemory);
+        p.unapplyInPlace(doubles, constantMemory);
+        p.unapplyInPlace(floats, constantMemory);
+        p.unapplyInPlace(shorts, constantMemory);
+        p.unapplyInPlace(chars, constantMemory);
+        p.unapplyInPlace(bytes, constantMemory);
+        p.unapplyInPlace(objects, constantMemory);
+        assertArrayEquals(boxed, objects);
+        for (int i = 0; i < extra; i++) {
+          assertEquals(i, ints[i]);
+          assertEquals(i, longs[i]);
+          assertEquals(i, doubles[i]);
+          assertEquals(i, floats[i]);
+          assertEquals((short) i, shorts[i]);
+          assertEquals((char) i, chars[i]);
+          assertEquals((byte) i, bytes[i]);
+        }
+        int[] numbers = randomNumbers(1000, extra);
+        int[] unapplied = numbers.clone();
+        p.unapplyInPlace(unapplied, constantMemory);
+        assertArrayEquals(Apply.apply(p.invert(), numbers), unapplied);
+      }
+    }
+    Assertions.assertThrows(IllegalArgumentException.class, () -> cycle(1, 5).applyInPlace(new double[4]));
+  }
+
+  @Test
+  void testParallel() {
+    for (int length : new int[]{10, 65536, 70000, 300000}) {
+      Permutation p = randomPermutation(length);
+      Permutation q = randomPermutation(length / 2 + 1);
+      assertPermutationEquals(p.compose(q), p.composeParallel(q));
+      assertPermutationEquals(q.compose(p), q.composeParallel(p));
+      assertPermutationEquals(p.invert(), p.invertParallel());
+      assertEquals(p.invert().packed().getClass(), p.invertParallel().packed().getClass());
+      assertEquals(p.compose(q).packed().getClass(), p.composeParallel(q).packed().getClass());
+      Integer[] boxed = new Integer[length + 2];
+      double[] doubles = new double[length + 2];
+      byte[] bytes = new byte[length + 2];
+      for (int i = 0; i < boxed.length; i++) {
+        boxed[i] = i;
+        doubles[i] = i;
+        bytes[i] = (byte) i;
+      }
+      Integer[] expected = Apply.apply(p, boxed);
+      assertArrayEquals(expected, p.applyParallel(boxed));
+      double[] parallelDoubles = p.applyParallel(doubles);
+      byte[] parallelBytes = p.applyParallel(bytes);
+      for (int i = 0; i < boxed.length; i++) {
+        assertEquals((int) expected[i], parallelDoubles[i]);
+        assertEquals((byte) (int) expected[i], parallelBytes[i]);
+      }
+    }
+  }
+
+  @Test
+  void testApplyPrimitive() {
+    for (int length : new int[]{0, 1, 10, 1000}) {
+      Permutation p = randomPermutation(length);
+      Integer[] boxed = new Integer[length + 3];
+      int[] ints = new int[boxed.length];
+      long[] longs = new long[boxed.length];
+      char[] chars = new char[boxed.length];
+      boolean[] booleans = new boolean[boxed.length];
+      for (int i = 0; i < boxed.length; i++) {
+        boxed[i] = i;
+        ints[i] = i;
+        longs[i] = i;
+        chars[i] = (char) ('a' + i % 26);
+        booleans[i] = i % 3 == 0;
+      }
+      Integer[] expected = Apply.apply(p, boxed);
+      int[] appliedInts = p.applyInts(ints);
+      long[] appliedLongs = p.apply(longs);
+      boolean[] appliedBooleans = p.apply(booleans);
+      String appliedString = p.apply(new String(chars));
+      assertEquals(Apply.apply(p, new String(chars)), appliedString);
+      assertEquals(appliedString, p.apply(new StringBuilder(new String(chars))));
+      int[] numbers = randomNumbers(100, boxed.length);
+      assertArrayEquals(Apply.apply(p, numbers), p.applyInts(numbers));
+      assertEquals(Arrays.asList(ArrayUtil.box(Apply.apply(p, numbers))), p.apply(numbers));
+      IntBuffer buffer = IntBuffer.allocate(ints.length + 2);
+      buffer.position(2);
+      buffer.put(ints);
+      buffer.position(2);
+      IntBuffer appliedBuffer = p.apply(buffer);
+      assertEquals(2, buffer.position());
+      ByteBuffer bytes = ByteBuffer.allocate(ints.length).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i : ints)
+        bytes.put((byte) i);
+      bytes.flip();
+      ByteBuffer appliedBytes = p.apply(bytes);
+      assertEquals(ByteOrder.LITTLE_ENDIAN, appliedBytes.order());
+      for (int i = 0; i < boxed.length; i++) {
+        int k = expected[i];
+        assertEquals(k, appliedInts[i]);
+        assertEquals(k, appliedLongs[i]);
+        assertEquals(k % 3 == 0, appliedBooleans[i]);
+        assertEquals(chars[k], appliedString.charAt(i));
+        assertEquals(k, appliedBuffer.get(i));
+        assertEquals((byte) k, appliedBytes.get(i));
+      }
+    }
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Permutation.cycle(1, 4).apply(new double[3]));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Permutation.cycle(1, 4).apply("abc"));
+  }
+}
@@ -0,0 +1,77 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static com.github.cyclophone.Equals.assertPermutationEquals;
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermutedViewTest {
+
+  @Test
+  void testListView() {
+    for (int length : new int[]{0, 1, 10, 500}) {
+      Permutation p = randomPermutation(length);
+      Permutation q = randomPermutation(length / 2);
+      List<Integer> list = new ArrayList<>();
+      for (int i = 0; i < length + 2; i++)
+        list.add(i);
+      PermutedList<Integer> view = p.view(list);
+      assertTrue(view instanceof RandomAccess);
+      assertEquals(p.apply(list), view);
+      assertEquals(p.apply(list), view.materialize());
+      assertEquals(p.apply(list), p.view(new LinkedList<>(list)));
+      PermutedList<Integer> twice = q.view(view);
+      assertPermutationEquals(q.compose(p), twice.permutation());
+      assertEquals(q.apply(p.apply(list)), twice);
+      if (length > 0) {
+        list.set(0, -1);
+        assertEquals(-1, (int) view.get(Apply.apply(p, 0)));
+      }
+    }
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Permutation.cycle(1, 4).view(Arrays.asList(1, 2)));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> Permutation.cycle(1, 2).view(Arrays.asList(1, 2)).get(2));
+  }
+
+  @Test
+  void testBufferView() {
+    for (int length : new int[]{0, 1, 10, 500}) {
+      Permutation p = randomPermutation(length);
+      Permutation q = randomPermutation(length);
+      int[] ints = new int[length + 3];
+      long[] longs = new long[length + 3];
+      for (int i = 0; i < ints.length; i++) {
+        ints[i] = i;
+        longs[i] = i;
+      }
+      IntBuffer buffer = IntBuffer.allocate(ints.length + 1);
+      buffer.position(1);
+      buffer.put(ints);
+      buffer.position(1);
+      PermutedBuffers.OfInt view = p.view(buffer);
+      assertEquals(1, buffer.position());
+      assertEquals(ints.length, view.size());
+      int[] expected = p.applyInts(ints);
+      for (int i = 0; i < ints.length; i++)
+        assertEquals(expected[i], view.get(i));
+      assertEquals(IntBuffer.wrap(expected), view.materialize());
+      PermutedBuffers.OfInt twice = q.view(view);
+      assertPermutationEquals(q.compose(p), twice.permutation());
+      assertEquals(IntBuffer.wrap(q.applyInts(expected)), twice.materialize());
+      PermutedBuffers.OfLong longView = p.view(LongBuffer.wrap(longs));
+      assertArrayEquals(p.apply(longs), longView.materialize().array());
+    }
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> Permutation.identity().view(IntBuffer.allocate(2)).get(2));
+  }
+}
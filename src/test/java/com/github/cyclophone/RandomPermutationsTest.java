@@ -0,0 +1,116 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.github.cyclophone.Equals.assertPermutationEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RandomPermutationsTest {
+
+  @Test
+  void testSeeded() {
+    RandomPermutations a = RandomPermutations.seeded(42);
+    RandomPermutations b = RandomPermutations.seeded(42);
+    for (int __ = 0; __ < 100; __++) {
+      Permutation p = a.next(50);
+      assertPermutationEquals(p, b.next(50));
+      assertTrue(p.length() <= 50);
+    }
+    assertTrue(a.next(100).packed() instanceof byte[]);
+    assertTrue(a.next(1000).packed() instanceof short[]);
+  }
+
+  @Test
+  void testFill() {
+    int n = 13;
+    int count = 20000;
+    int[] serial = new int[n * count];
+    int[] parallel = new int[n * count];
+    int[] again = new int[n * count];
+    RandomPermutations.seeded(7).fill(n, count, serial);
+    RandomPermutations.seeded(7).fillParallel(n, count, parallel);
+    RandomPermutations.seeded(7).fillParallel(n, count, again);
+    assertArrayEquals(parallel, again);
+    for (int k = 0; k < count; k++) {
+      assertTrue(Rankings.isValid(Arrays.copyOfRange(serial, k * n, (k + 1) * n)));
+      assertTrue(Rankings.isValid(Arrays.copyOfRange(parallel, k * n, (k + 1) * n)));
+    }
+    Assertions.assertThrows(IllegalArgumentException.class, () -> RandomPermutations.create().fill(n, count + 1, serial));
+  }
+
+  @Test
+  void testUniform() {
+    RandomPermutations random = RandomPermutations.seeded(1);
+    int[] counts = new int[24];
+    int[] ranking = new int[4];
+    for (int __ = 0; __ < 24000; __++) {
+      random.shuffleInto(ranking);
+      counts[(int) Permutation.define0(ranking).rank(4)]++;
+    }
+    for (int count : counts)
+      assertTrue(count > 800 && count < 1200, Arrays.toString(counts));
+  }
+
+  @Test
+  void testCycleType() {
+    RandomPermutations random = RandomPermutations.seeded(2);
+    Map<Permutation, Integer> counts = new HashMap<>();
+    for (int __ = 0; __ < 8000; __++) {
+      Permutation p = random.nextOfCycleType(1, 3);
+      counts.merge(p, 1, Integer::sum);
+    }
+    assertEquals(Permutation.ofCycleType(3, 1).collect(Collectors.toSet()), counts.keySet());
+    for (int count : counts.values())
+      assertTrue(count > 800 && count < 1200, counts.toString());
+    Permutation large = random.nextOfCycleType(5, 5, 2, 1, 1);
+    assertEquals(3, large.getCycles().length);
+    assertTrue(large.length() <= 14);
+    assertTrue(random.nextOfCycleType(100, 100).packed() instanceof byte[]);
+  }
+
+  @Test
+  void testDerangement() {
+    RandomPermutations random = RandomPermutations.seeded(3);
+    Map<Permutation, Integer> counts = new HashMap<>();
+    for (int __ = 0; __ < 9000; __++)
+      counts.merge(random.nextDerangement(4), 1, Integer::sum);
+    assertEquals(Permutation.derangements(4).collect(Collectors.toSet()), counts.keySet());
+    for (int count : counts.values())
+      assertTrue(count > 800 && count < 1200, counts.toString());
+    for (int __ = 0; __ < 100; __++) {
+      int[] ranking = Rankings.fill(random.nextDerangement(100).getRanking(), 100);
+      for (int i = 0; i < ranking.length; i++)
+        assertTrue(ranking[i] != i);
+    }
+    assertPermutationEquals(Permutation.identity(), random.nextDerangement(0));
+    assertTrue(random.nextDerangement(100).packed() instanceof byte[]);
+  }
+
+  @Test
+  void testProductReplacement() {
+    // (1 2 3) and (2 3 4) generate the alternating group of degree 4
+    ProductReplacement sampler = RandomPermutations.seeded(4).productReplacement(
+        Permutation.cycle(1, 2, 3), Permutation.cycle(2, 3, 4));
+    Set<Permutation> seen = new HashSet<>();
+    for (int __ = 0; __ < 2000; __++)
+      seen.add(sampler.next());
+    assertEquals(Permutation.symmetricGroup(4).filter(RandomPermutationsTest::isEven).collect(Collectors.toSet()), seen);
+  }
+
+  private static boolean isEven(Permutation p) {
+    int transpositions = 0;
+    for (int[] cycle : p.getCycles())
+      transpositions += cycle.length - 1;
+    return transpositions % 2 == 0;
+  }
+}
@@ -0,0 +1,141 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordPermuterTest {
+
+  private static final int RECORD = 12;
+
+  private static byte[] randomRecords(int n) {
+    byte[] data = new byte[n * RECORD];
+    new Random().nextBytes(data);
+    return data;
+  }
+
+  private static byte[] expected(int[] ranking, byte[] data) {
+    byte[] result = data.clone();
+    for (int i = 0; i < ranking.length; i++)
+      System.arraycopy(data, i * RECORD, result, ranking[i] * RECORD, RECORD);
+    return result;
+  }
+
+  @Test
+  void testApply() throws IOException {
+    Path dir = Files.createTempDirectory("records");
+    Path source = dir.resolve("source");
+    Path target = dir.resolve("target");
+    Path rankingFile = dir.resolve("ranking");
+    try {
+      for (int n : new int[]{0, 1, 7, 1000}) {
+        byte[] data = randomRecords(n);
+        Files.write(source, data);
+        Permutation p = randomPermutation(Math.max(0, n - 2));
+        int[] ranking = Rankings.fill(p.getRanking(), n);
+        ByteBuffer buffer = ByteBuffer.allocate(n * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i : ranking)
+          buffer.putLong(i);
+        Files.write(rankingFile, buffer.array());
+        for (long memory : new long[]{8 * (RECORD + 8), 1000, 1 << 20}) {
+          try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+               FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordPermuter.apply(p, in, out, RECORD, memory, dir);
+          }
+          assertArrayEquals(expected(ranking, data), Files.readAllBytes(target));
+          try (FileChannel r = FileChannel.open(rankingFile, StandardOpenOption.READ);
+               FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+               FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordPermuter.apply(r, ByteOrder.LITTLE_ENDIAN, in, out, RECORD, memory, dir);
+          }
+          assertArrayEquals(expected(ranking, data), Files.readAllBytes(target));
+        }
+      }
+    } finally {
+      Files.deleteIfExists(source);
+      Files.deleteIfExists(target);
+      Files.deleteIfExists(rankingFile);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void testMultiPass() throws IOException {
+    Path dir = Files.createTempDirectory("records");
+    Path source = dir.resolve("source");
+    Path target = dir.resolve("target");
+    int record = 64;
+    int n = 80000;
+    long memory = 48 << 10;
+    // the destinations do not fit into MAX_BUCKETS buckets of memory size, so some buckets are split again
+    assertTrue((long) n * record / (memory / 8 * 3) > RecordPermuter.MAX_BUCKETS);
+    try {
+      ByteBuffer data = ByteBuffer.allocate(n * record);
+      for (int i = 0; i < n; i++)
+        data.putLong(i * record, i);
+      Files.write(source, data.array());
+      Permutation p = randomPermutation(n);
+      try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+           FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        RecordPermuter.apply(p, in, out, record, memory, dir);
+      }
+      ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(target));
+      assertEquals(n * record, result.capacity());
+      for (int i = 0; i < n; i++)
+        assertEquals(i, result.getLong(Apply.apply(p, i) * record));
+      try (Stream<Path> files = Files.list(dir)) {
+        assertEquals(2, files.count());
+      }
+    } finally {
+      Files.deleteIfExists(source);
+      Files.deleteIfExists(target);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  void testInvalid() throws IOException {
+    Path dir = Files.createTempDirectory("records");
+    Path source = dir.resolve("source");
+    Path target = dir.resolve("target");
+    try {
+      Files.write(source, new byte[RECORD * 3 + 1]);
+      try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+           FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> RecordPermuter.apply(Permutation.identity(), in, out, RECORD, 1000, dir));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> RecordPermuter.apply(Permutation.identity(), in, out, 1, 10, dir));
+      }
+      Files.write(source, new byte[RECORD * 3]);
+      try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+           FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> RecordPermuter.apply(Permutation.cycle(1, 5), in, out, RECORD, 1000, dir));
+      }
+      try (Stream<Path> files = Files.list(dir)) {
+        Assertions.assertEquals(2, files.count());
+      }
+    } finally {
+      Files.deleteIfExists(source);
+      Files.deleteIfExists(target);
+      Files.delete(dir);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.github.cyclophone;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.github.cyclophone.Equals.assertPermutationEquals;
+import static com.github.cyclophone.Permutation.cycle;
+import static com.github.cyclophone.RandomPermutation.randomPermutation;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmallPermutationTest {
+
+  @Test
+  void testRoundTrip() {
+    for (int __ = 0; __ < 100; __++) {
+      Permutation p = randomPermutation(16);
+      SmallPermutation small = SmallPermutation.of(p);
+      assertPermutationEquals(p, small.toPermutation());
+      assertEquals(small, SmallPermutation.fromLong(small.toLong()));
+    }
+    assertTrue(SmallPermutation.of(Permutation.identity()).isIdentity());
+  }
+
+  @Test
+  void testCompose() {
+    for (int __ = 0; __ < 100; __++) {
+      Permutation p = randomPermutation(16);
+      Permutation q = randomPermutation((int) (Math.random() * 16));
+      SmallPermutation product = SmallPermutation.of(p).compose(SmallPermutation.of(q));
+      assertPermutationEquals(p.compose(q), product.toPermutation());
+      for (int i = 0; i < 20; i++) {
+        assertEquals(Apply.apply(p.compose(q), i), product.apply(i));
+      }
+    }
+  }
+
+  @Test
+  void testInvert() {
+    for (int __ = 0; __ < 100; __++) {
+      Permutation p = randomPermutation(16);
+      SmallPermutation small = SmallPermutation.of(p);
+      assertPermutationEquals(p.invert(), small.invert().toPermutation());
+      assertTrue(small.compose(small.invert()).isIdentity());
+    }
+  }
+
+  @Test
+  void testPow() {
+    SmallPermutation p = SmallPermutation.of(cycle(1, 2, 3).compose(cycle(4, 5)));
+    assertTrue(p.pow(6).isIdentity());
+    assertTrue(p.pow(-6000000000000L).isIdentity());
+    assertEquals(p.invert(), p.pow(-1));
+    for (int n = -10; n <= 10; n++) {
+      assertPermutationEquals(p.toPermutation().pow(n), p.pow(n).toPermutation());
+    }
+  }
+
+  @Test
+  void testCompareTo() {
+    for (int __ = 0; __ < 100; __++) {
+      int[] a = RandomPermutation.randomRanking(16);
+      int[] b = RandomPermutation.randomRanking(16);
+      int expected = 0;
+      for (int i = 0; i < 16 && expected == 0; i++)
+        expected = Integer.compare(a[i], b[i]);
+      int actual = SmallPermutation.of(Permutation.define0(a)).compareTo(SmallPermutation.of(Permutation.define0(b)));
+      assertEquals(Integer.signum(expected), Integer.signum(actual));
+    }
+  }
+
+  @Test
+  void testTooLong() {
+    Assertions.assertThrows(IllegalArgumentException.class, () ->
+        SmallPermutation.of(cycle(1, 17)));
+    Assertions.assertThrows(IllegalArgumentException.class, () ->
+        SmallPermutation.fromLong(0L));
+  }
+}
@@ -122,6 +122,43 @@ class TestRankings {
     }
   }
 
+  @Test
+  void testInvert() {
+    for (int length : new int[]{0, 1, 2, 10, 1000, 200000}) {
+      int[] ranking = RandomPermutation.randomRanking(length);
+      int[] inverted = Rankings.invert(ranking);
+      assertTrue(isSorted(Rankings.comp(ranking, inverted)));
+      assertArrayEquals(inverted, Rankings.invertParallel(ranking));
+      int[] copy = Arrays.copyOf(ranking, length);
+      Rankings.invertInPlace(copy);
+      assertArrayEquals(inverted, copy);
+    }
+  }
+
+  @Test
+  void testRankMR() {
+    int[] dest = new int[6];
+    int[] scratch = new int[12];
+    boolean[] seen = new boolean[720];
+    for (int rank = 0; rank < 720; rank++) {
+      Rankings.unrankMR(6, rank, dest);
+      Rankings.checkRanking(dest);
+      assertEquals(rank, Rankings.rankMR(dest, scratch));
+      seen[Math.toIntExact(Rankings.lexRank(dest, 6, new int[7], new int[6]))] = true;
+    }
+    for (boolean b : seen)
+      assertTrue(b);
+    for (int __ = 0; __ < 100; __++) {
+      int[] ranking = RandomPermutation.randomRanking(20);
+      int[] copy = Arrays.copyOf(ranking, 20);
+      long rank = Rankings.rankMR(ranking);
+      assertArrayEquals(copy, ranking);
+      int[] unranked = new int[20];
+      Rankings.unrankMR(20, rank, unranked);
+      assertArrayEquals(ranking, unranked);
+    }
+  }
+
   @Test
   void testNextOffset() {
     int[] sorted = {0, 0, 1, 3, 3, 3, 4, 4};